@@ -10,6 +10,7 @@ import com.guichaguri.fastmustache.compiler.bytecode.data.TypedDataSource;
 import com.guichaguri.fastmustache.compiler.parser.MustacheParser;
 import com.guichaguri.fastmustache.compiler.parser.ParseException;
 import com.guichaguri.fastmustache.compiler.parser.tokens.MustacheToken;
+import com.guichaguri.fastmustache.compiler.parser.tokens.TextToken;
 import com.guichaguri.fastmustache.template.CompilerOptions;
 import com.guichaguri.fastmustache.template.MustacheType;
 import com.guichaguri.fastmustache.template.Template;
@@ -205,10 +206,38 @@ public class FastMustache implements Closeable {
             templateName = "";
         }
 
-        MustacheCompiler compiler = new MustacheCompiler(className, templateName, dataSource.getDataType());
+        MustacheCompiler compiler = new MustacheCompiler(className, templateName,
+                dataSource.getDataType(), options.getClassVersion());
         compiler.insertConstructor();
         compiler.insertObjectRender();
+        compiler.insertObjectBuilderRender();
+        compiler.insertObjectAppendableRender();
         compiler.insertRender(options, dataSource, parse());
+        compiler.insertBuilderRender(options, dataSource, parse());
+        compiler.insertAppendableRender(options, dataSource, parse());
+
+        if (options.isByteOutputEnabled()) {
+            compiler.insertObjectByteRender();
+            compiler.insertByteRender(options, dataSource, parse());
+            compiler.insertRenderBytes(TextToken.getMinimumLength(parse()));
+        }
+
+        if (options.isChunkedOutputEnabled()) {
+            compiler.insertObjectChunkedRender();
+            compiler.insertChunkedRender(options, dataSource, parse());
+        }
+
+        if (options.isSegmentOutputEnabled()) {
+            compiler.insertObjectSegmentRender();
+            compiler.insertSegmentRender(options, dataSource, parse());
+        }
+
+        if (options.isGzipOutputEnabled()) {
+            compiler.insertObjectGzipRender();
+            compiler.insertGzipRender(options, dataSource, parse());
+        }
+
+        compiler.insertStaticInitializer(options);
         return compiler.toByteArray();
     }
 
@@ -0,0 +1,221 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.compiler.parser.tokens.SectionToken;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the render(T, Appendable) method, which writes straight into the output instead of building a string
+ */
+public class AppendableGenerator extends BytecodeGenerator {
+
+    public static final String IO_EXCEPTION = "java/io/IOException";
+
+    protected final Type outputType;
+    protected final Class<?> outputClass;
+
+    public AppendableGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        this(compiler, options, data, APPENDABLE, Appendable.class);
+    }
+
+    protected AppendableGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data,
+                                  Type outputType, Class<?> outputClass) {
+        super(compiler, options, data);
+        this.outputType = outputType;
+        this.outputClass = outputClass;
+    }
+
+    /**
+     * Starts building the render method
+     */
+    public void start() throws CompilerException {
+        Type dataType = data.getDataType();
+        Class<?> dataClass = data.getDataClass();
+
+        mv = compiler.getClassWriter().visitMethod(ACC_PUBLIC, "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, dataType, outputType), null, getExceptions());
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        thisVar = insertLocalStart(compiler.getClassType().getDescriptor(), null, true, start);
+        dataVar = insertLocalStart(dataType.getDescriptor(), dataClass, true, start);
+        builderVar = insertLocalStart(outputType.getDescriptor(), outputClass, true, start);
+
+        name = "render" + outputClass.getSimpleName();
+        context = data.createContext(this, mv, dataVar);
+
+        data.loadDataItem(context, dataVar);
+    }
+
+    /**
+     * The exceptions the render method may throw
+     * @return The exception internal names
+     */
+    protected String[] getExceptions() {
+        return new String[]{IO_EXCEPTION};
+    }
+
+    @Override
+    public void end() {
+        insertVoidReturn();
+    }
+
+    @Override
+    protected Type getOutputType() {
+        return outputType;
+    }
+
+    @Override
+    protected Class<?> getOutputClass() {
+        return outputClass;
+    }
+
+    @Override
+    protected BytecodeGenerator createGenerator() {
+        return new AppendableGenerator(compiler, options, data, outputType, outputClass);
+    }
+
+    @Override
+    protected void insertAppend(Type type) {
+        // Appendable only has append(char) and append(CharSequence)
+        Type argType = type == Type.CHAR_TYPE ? Type.CHAR_TYPE : CHAR_SEQUENCE;
+
+        // out.append(...)
+        mv.visitMethodInsn(INVOKEINTERFACE, APPENDABLE.getInternalName(), "append",
+                Type.getMethodDescriptor(APPENDABLE, argType), true);
+    }
+
+    /**
+     * The output type taken by the {@link com.guichaguri.fastmustache.template.TemplateUtils} writers
+     * @return The output type
+     */
+    protected Type getWriterType() {
+        return APPENDABLE;
+    }
+
+    @Override
+    protected void insertAppendValue(Type type) {
+        switch(type.getSort()) {
+            case Type.INT:
+                // TemplateUtils.appendLong(out, (long) ...)
+                mv.visitInsn(I2L);
+                insertWriter("appendLong", Type.LONG_TYPE);
+                break;
+            case Type.LONG:
+                // TemplateUtils.appendLong(out, ...)
+                insertWriter("appendLong", Type.LONG_TYPE);
+                break;
+            case Type.CHAR:
+                insertAppend(type);
+                break;
+            case Type.OBJECT:
+                if (type.equals(NUMBER)) {
+                    // TemplateUtils.appendNumber(out, ...)
+                    insertWriter("appendNumber", NUMBER);
+                } else {
+                    insertAppend(type);
+                }
+                break;
+            default:
+                // Floating point numbers and booleans are converted into a string first
+                insertAppend(insertStringValue(type));
+        }
+    }
+
+    private void insertWriter(String name, Type argType) {
+        Type writerType = getWriterType();
+
+        mv.visitMethodInsn(INVOKESTATIC, UTILS.getInternalName(), name,
+                Type.getMethodDescriptor(writerType, writerType, argType), false);
+
+        if (!outputType.equals(writerType)) {
+            mv.visitTypeInsn(CHECKCAST, outputType.getInternalName());
+        }
+    }
+
+    @Override
+    protected void insertEscape(Escaper escaper) {
+        // Escaper.escapeInto(out, ...)
+        mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeInto",
+                Type.getMethodDescriptor(APPENDABLE, APPENDABLE, CHAR_SEQUENCE), false);
+
+        if (!outputType.equals(APPENDABLE)) {
+            mv.visitTypeInsn(CHECKCAST, outputType.getInternalName());
+        }
+    }
+
+    /**
+     * Adds a runtime lambda
+     *
+     * Lambdas can only render into a {@link StringBuilder}, so it renders into a temporary one
+     * and then appends it into the output
+     */
+    @Override
+    public void addLambda(SectionToken token) throws CompilerException {
+        if (token.inverted) {
+            super.addLambda(token);
+            return;
+        }
+
+        Label lambdaStart = new Label();
+        Label lambdaEnd = new Label();
+
+        clearStack();
+
+        mv.visitLabel(lambdaStart);
+
+        LocalVariable outVar = builderVar;
+        LocalVariable tempVar = insertLocalStart(BUILDER.getDescriptor(), StringBuilder.class, true, lambdaStart);
+
+        // temp = new StringBuilder()
+        mv.visitTypeInsn(NEW, BUILDER.getInternalName());
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESPECIAL, BUILDER.getInternalName(), "<init>", "()V", false);
+        tempVar.store(mv);
+
+        // Renders the lambda into the temporary builder
+        builderVar = tempVar;
+        super.addLambda(token);
+        builderVar = outVar;
+
+        clearStack();
+
+        // out.append(temp)
+        loadVarStack(outVar);
+        tempVar.load(mv);
+        insertAppend(CHAR_SEQUENCE);
+
+        clearStack();
+
+        mv.visitLabel(lambdaEnd);
+        insertLocalEnd(tempVar, lambdaEnd);
+    }
+
+    /**
+     * Adds a partial
+     *
+     * Renders the partial straight into the output
+     */
+    @Override
+    public void addPartial(String partial) throws CompilerException {
+        if (addResolvedPartial(partial)) return;
+
+        clearStack();
+
+        // Loads the partial and the data into the stack
+        data.insertPartialGetter(context, partial);
+
+        // Loads the output into the stack
+        builderVar.load(mv);
+
+        // partial.render(data, out)
+        mv.visitMethodInsn(INVOKEINTERFACE, TEMPLATE.getInternalName(), "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, OBJECT, outputType), true);
+    }
+
+}
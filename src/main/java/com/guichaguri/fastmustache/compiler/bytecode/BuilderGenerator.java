@@ -0,0 +1,48 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the render(StringBuilder, T) method, which renders into the caller's builder.
+ *
+ * The render(T) method only creates the builder and delegates to it,
+ * and partials from other templates render into the same builder.
+ */
+public class BuilderGenerator extends BytecodeGenerator {
+
+    public BuilderGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data);
+    }
+
+    /**
+     * Starts building the render method
+     */
+    public void start() throws CompilerException {
+        Type dataType = data.getDataType();
+        Class<?> dataClass = data.getDataClass();
+
+        mv = compiler.getClassWriter().visitMethod(ACC_PUBLIC, "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, BUILDER, dataType), null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        thisVar = insertLocalStart(compiler.getClassType().getDescriptor(), null, true, start);
+        builderVar = insertLocalStart(BUILDER.getDescriptor(), StringBuilder.class, true, start);
+        dataVar = insertLocalStart(dataType.getDescriptor(), dataClass, true, start);
+
+        name = "renderBuilder";
+        context = data.createContext(this, mv, dataVar);
+
+        data.loadDataItem(context, dataVar);
+    }
+
+    @Override
+    public void end() {
+        insertVoidReturn();
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.output.ByteOutput;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Type;
+import java.nio.charset.StandardCharsets;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the render(T, ByteOutput) method.
+ *
+ * The raw text is encoded into UTF-8 in compile-time and stored in static fields,
+ * while the variables are encoded straight into the output.
+ */
+public class ByteOutputGenerator extends AppendableGenerator {
+
+    public static final Type BYTE_OUTPUT = Type.getType(ByteOutput.class);
+    public static final Type BYTE_ARRAY = Type.getType(byte[].class);
+
+    public ByteOutputGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data, BYTE_OUTPUT, ByteOutput.class);
+    }
+
+    protected ByteOutputGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data,
+                                  Type outputType, Class<? extends ByteOutput> outputClass) {
+        super(compiler, options, data, outputType, outputClass);
+    }
+
+    @Override
+    protected BytecodeGenerator createGenerator() {
+        return new ByteOutputGenerator(compiler, options, data);
+    }
+
+    @Override
+    protected String[] getExceptions() {
+        return null;
+    }
+
+    @Override
+    protected void insertAppend(Type type) {
+        if (type == Type.CHAR_TYPE) {
+            // Only ByteOutput declares append(char)
+            mv.visitMethodInsn(INVOKEVIRTUAL, BYTE_OUTPUT.getInternalName(), "append",
+                    Type.getMethodDescriptor(BYTE_OUTPUT, type), false);
+
+            if (!outputType.equals(BYTE_OUTPUT)) {
+                mv.visitTypeInsn(CHECKCAST, outputType.getInternalName());
+            }
+            return;
+        }
+
+        // Strings are encoded through append(CharSequence)
+        Type argType = type.getSort() == Type.OBJECT ? CHAR_SEQUENCE : type;
+
+        // out.append(...)
+        mv.visitMethodInsn(INVOKEVIRTUAL, outputType.getInternalName(), "append",
+                Type.getMethodDescriptor(outputType, argType), false);
+    }
+
+    @Override
+    protected Type getWriterType() {
+        return BYTE_OUTPUT;
+    }
+
+    @Override
+    protected void insertEscape(Escaper escaper) {
+        // Escaper.escapeInto(out, ...)
+        mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeInto",
+                Type.getMethodDescriptor(BYTE_OUTPUT, BYTE_OUTPUT, CHAR_SEQUENCE), false);
+
+        if (!outputType.equals(BYTE_OUTPUT)) {
+            mv.visitTypeInsn(CHECKCAST, outputType.getInternalName());
+        }
+    }
+
+    /**
+     * Adds a pre-encoded raw text
+     */
+    @Override
+    public void addText(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        // Loads the output into the stack
+        loadVarStack(builderVar);
+
+        if (bytes.length == 1) {
+            // Uses append(byte)
+            CompilerUtils.loadInteger(mv, bytes[0]);
+            insertAppend(Type.BYTE_TYPE);
+        } else {
+            // Uses append(byte[])
+            // Loads the static encoded text into the stack
+            String field = compiler.insertByteConstant(str);
+            mv.visitFieldInsn(GETSTATIC, compiler.getClassType().getInternalName(), field, BYTE_ARRAY.getDescriptor());
+            insertAppend(BYTE_ARRAY);
+        }
+
+        // As it returns itself, the output remains in the stack
+    }
+
+}
@@ -5,6 +5,9 @@ import com.guichaguri.fastmustache.compiler.bytecode.data.DataSourceContext;
 import com.guichaguri.fastmustache.compiler.bytecode.data.MemberType;
 import com.guichaguri.fastmustache.compiler.parser.tokens.MustacheToken;
 import com.guichaguri.fastmustache.compiler.parser.tokens.SectionToken;
+import com.guichaguri.fastmustache.escaper.EscapeCache;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.output.StringBuilderPool;
 import com.guichaguri.fastmustache.template.*;
 import org.objectweb.asm.Handle;
 import org.objectweb.asm.Label;
@@ -22,8 +25,13 @@ public class BytecodeGenerator {
     public static final Type SECTION = Type.getType(Section.class);
     public static final Type UTILS = Type.getType(TemplateUtils.class);
     public static final Type BUILDER = Type.getType(StringBuilder.class);
+    public static final Type APPENDABLE = Type.getType(Appendable.class);
+    public static final Type CHAR_SEQUENCE = Type.getType(CharSequence.class);
     public static final Type STRING = Type.getType(String.class);
     public static final Type OBJECT = Type.getType(Object.class);
+    public static final Type NUMBER = Type.getType(Number.class);
+    public static final Type BUILDER_POOL = Type.getType(StringBuilderPool.class);
+    public static final Type ESCAPE_CACHE = Type.getType(EscapeCache.class);
 
     protected final MustacheCompiler compiler;
     protected final CompilerOptions options;
@@ -44,10 +52,19 @@ public class BytecodeGenerator {
     protected String name;
     protected int lambdaCount = 0;
 
+    protected String capacityField;
+
+    protected String templateName;
+
+    protected int estimatedSize = 0; // The estimated bytecode size of the tokens added into this method
+    protected SectionToken sharedSection; // The unknown section being added, which has its content in a shared method
+    protected LocalVariable sectionValue; // The value of the unknown section being added, when it was already loaded
+
     public BytecodeGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
         this.compiler = compiler;
         this.options = options;
         this.data = data;
+        this.templateName = compiler.getTemplateName();
     }
 
     /**
@@ -60,13 +77,48 @@ public class BytecodeGenerator {
 
         mv = compiler.getClassWriter().visitMethod(ACC_PUBLIC, "render", Type.getMethodDescriptor(STRING, dataType), null, null);
         mv.visitCode();
+        mv.visitLabel(start);
+
+        thisVar = insertLocalStart(compiler.getClassType().getDescriptor(), null, true, start);
+
+        if (options.isAdaptiveCapacityEnabled()) {
+            capacityField = compiler.insertCapacityField();
+        }
+
+        if (options.isBuilderPoolEnabled()) {
+            // StringBuilderPool.DEFAULT.acquire(length)
+            mv.visitFieldInsn(GETSTATIC, BUILDER_POOL.getInternalName(), "DEFAULT", BUILDER_POOL.getDescriptor());
+            insertCapacity(minimumLength);
+            mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER_POOL.getInternalName(), "acquire",
+                    Type.getMethodDescriptor(BUILDER, Type.INT_TYPE), false);
+        } else {
+            insertNewBuilder(minimumLength);
+        }
+
+        dataVar = insertLocalStart(dataType.getDescriptor(), dataClass, true, start);
+        builderVar = insertLocalStart(BUILDER.getDescriptor(), StringBuilder.class, false, start);
+
+        name = "render";
+        context = data.createContext(this, mv, dataVar);
+
+        stack.push(builderVar);
+        data.loadDataItem(context, dataVar);
+    }
 
+    /**
+     * Loads a new {@link StringBuilder} into the stack
+     * @param minimumLength The minimum capacity for the StringBuilder
+     */
+    protected void insertNewBuilder(int minimumLength) {
         // new StringBuilder()
-        mv.visitLabel(start);
         mv.visitTypeInsn(NEW, BUILDER.getInternalName());
         mv.visitInsn(DUP);
 
-        if (minimumLength > 16) {
+        if (capacityField != null) {
+            // StringBuilder(Math.max(length, capacity))
+            insertCapacity(minimumLength);
+            mv.visitMethodInsn(INVOKESPECIAL, BUILDER.getInternalName(), "<init>", "(I)V", false);
+        } else if (minimumLength > 16) {
             // Initializes the builder with an initial capacity set
             // Reduces the frequency in which the builder resizes itself, thus improving the performance
 
@@ -79,27 +131,138 @@ public class BytecodeGenerator {
             // StringBuilder()
             mv.visitMethodInsn(INVOKESPECIAL, BUILDER.getInternalName(), "<init>", "()V", false);
         }
+    }
 
-        thisVar = insertLocalStart(compiler.getClassType().getDescriptor(), null, true, start);
-        dataVar = insertLocalStart(dataType.getDescriptor(), dataClass, true, start);
-        builderVar = insertLocalStart(BUILDER.getDescriptor(), StringBuilder.class, false, start);
+    /**
+     * Loads the initial builder capacity into the stack
+     * @param minimumLength The minimum capacity for the StringBuilder
+     */
+    protected void insertCapacity(int minimumLength) {
+        // Loads the minimum length into the stack
+        CompilerUtils.loadInteger(mv, minimumLength);
+
+        if (capacityField != null) {
+            // Math.max(length, this.capacity)
+            thisVar.load(mv);
+            mv.visitFieldInsn(GETFIELD, compiler.getClassType().getInternalName(), capacityField, "I");
+            mv.visitMethodInsn(INVOKESTATIC, "java/lang/Math", "max", "(II)I", false);
+        }
+    }
 
-        name = "render";
-        context = data.createContext(this, mv, dataVar);
+    /**
+     * Renders into the builder through the render(StringBuilder, T) method
+     */
+    public void addBuilderRender() {
+        clearStack();
 
-        stack.push(builderVar);
-        data.loadDataItem(context, dataVar);
+        // render(builder, data)
+        thisVar.load(mv);
+        builderVar.load(mv);
+        dataVar.load(mv);
+        mv.visitMethodInsn(INVOKEVIRTUAL, compiler.getClassType().getInternalName(), "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, BUILDER, data.getDataType()), false);
     }
 
     public void end() {
         // Loads the builder into the stack
         loadVarStack(builderVar);
 
-        // return builder.toString()
+        if (capacityField != null) {
+            // this.capacity = TemplateUtils.nextCapacity(this.capacity, builder.length())
+            // The field is not volatile, as losing an update from another thread is harmless
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER.getInternalName(), "length", "()I", false);
+            thisVar.load(mv);
+            mv.visitInsn(DUP_X1);
+            mv.visitFieldInsn(GETFIELD, compiler.getClassType().getInternalName(), capacityField, "I");
+            mv.visitInsn(SWAP);
+            mv.visitMethodInsn(INVOKESTATIC, UTILS.getInternalName(), "nextCapacity", "(II)I", false);
+            mv.visitFieldInsn(PUTFIELD, compiler.getClassType().getInternalName(), capacityField, "I");
+        }
+
+        if (options.isBuilderPoolEnabled()) {
+            // Keeps a reference to the builder so it can be released after
+            mv.visitInsn(DUP);
+        }
+
+        // builder.toString()
         mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER.getInternalName(), "toString", Type.getMethodDescriptor(STRING), false);
+
+        if (options.isBuilderPoolEnabled()) {
+            // StringBuilderPool.DEFAULT.release(builder)
+            mv.visitInsn(SWAP);
+            mv.visitFieldInsn(GETSTATIC, BUILDER_POOL.getInternalName(), "DEFAULT", BUILDER_POOL.getDescriptor());
+            mv.visitInsn(SWAP);
+            mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER_POOL.getInternalName(), "release",
+                    Type.getMethodDescriptor(Type.VOID_TYPE, BUILDER), false);
+        }
+
+        // return ...
         mv.visitInsn(ARETURN);
         mv.visitLabel(end);
+        endMethod();
+    }
+
+    /**
+     * Starts building a method for a recursive partial, which takes the output and the data item
+     * @param methodName The method name
+     * @param dataItem The data item that will be passed to the method
+     */
+    public void startPartial(String methodName, LocalVariable dataItem) throws CompilerException {
+        startOutline(methodName, Collections.singletonList(dataItem));
+    }
+
+    /**
+     * Starts building a method that renders tokens outlined from another method,
+     * which takes the output and every data item in context, in the same order
+     * @param methodName The method name
+     * @param dataItems The data items that will be passed to the method
+     */
+    public void startOutline(String methodName, List<LocalVariable> dataItems) throws CompilerException {
+        mv = compiler.getClassWriter().visitMethod(ACC_PRIVATE + ACC_STATIC + ACC_SYNTHETIC, methodName,
+                getOutlineDescriptor(dataItems), null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        builderVar = insertLocalStart(getOutputType().getDescriptor(), getOutputClass(), true, start);
+
+        List<LocalVariable> args = new ArrayList<>(dataItems.size());
+
+        for(LocalVariable dataItem : dataItems) {
+            args.add(insertLocalStart(dataItem.desc, dataItem.descClass, true, start));
+        }
+
+        dataVar = args.get(args.size() - 1);
+
+        name = methodName;
+        context = data.createContext(this, mv, dataVar);
+
+        for(LocalVariable arg : args) {
+            data.loadDataItem(context, arg);
+        }
+    }
+
+    /**
+     * Gets the descriptor of a method that takes the output and the data items
+     * @param dataItems The data items
+     * @return The method descriptor
+     */
+    protected String getOutlineDescriptor(List<LocalVariable> dataItems) {
+        Type[] args = new Type[dataItems.size() + 1];
+        args[0] = getOutputType();
+
+        for(int i = 0; i < dataItems.size(); i++) {
+            args[i + 1] = Type.getType(dataItems.get(i).desc);
+        }
+
+        return Type.getMethodDescriptor(Type.VOID_TYPE, args);
+    }
 
+    /**
+     * Declares the local variables and ends the method, which must be past its end label.
+     * The max stack size and locals are computed by the {@link org.objectweb.asm.ClassWriter}.
+     */
+    protected void endMethod() {
         for(LocalVariable var : locals) {
             if (!var.declared) continue;
 
@@ -107,10 +270,52 @@ public class BytecodeGenerator {
                     var.start, var.end == null ? end : var.end, var.index);
         }
 
-        mv.visitMaxs(10, locals.size());//TODO
+        mv.visitMaxs(0, 0);
         mv.visitEnd();
     }
 
+    /**
+     * Ends the method for a recursive partial
+     */
+    public void endPartial() {
+        insertVoidReturn();
+    }
+
+    /**
+     * Returns from a method that renders into an output given as an argument, ending it
+     */
+    protected void insertVoidReturn() {
+        clearStack();
+
+        mv.visitInsn(RETURN);
+        mv.visitLabel(end);
+        endMethod();
+    }
+
+    /**
+     * The type of the output the generated method renders into
+     * @return The output type
+     */
+    protected Type getOutputType() {
+        return BUILDER;
+    }
+
+    /**
+     * The class of the output the generated method renders into
+     * @return The output class
+     */
+    protected Class<?> getOutputClass() {
+        return StringBuilder.class;
+    }
+
+    /**
+     * Creates a new generator that renders into the same output
+     * @return The generator
+     */
+    protected BytecodeGenerator createGenerator() {
+        return new BytecodeGenerator(compiler, options, data);
+    }
+
     protected LocalVariable insertLocalStart(String desc, Class<?> clazz, boolean declared, Label start) {
         int index = locals.size();
 
@@ -172,20 +377,147 @@ public class BytecodeGenerator {
         }
     }
 
+    /**
+     * Appends the value at the top of the stack into the builder right below it.
+     * As it returns itself, the builder remains in the stack.
+     * @param type The value type
+     */
+    protected void insertAppend(Type type) {
+        // builder.append(...)
+        mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER.getInternalName(), "append",
+                Type.getMethodDescriptor(BUILDER, type), false);
+    }
+
+    /**
+     * Appends a value at the top of the stack into the builder right below it, without converting it into a string.
+     * As it returns itself, the builder remains in the stack.
+     * @param type The value type, as returned by {@link DataSource#insertValueGetter(DataSourceContext, String)}
+     */
+    protected void insertAppendValue(Type type) {
+        if (type.equals(NUMBER)) {
+            // TemplateUtils.appendNumber(builder, ...)
+            mv.visitMethodInsn(INVOKESTATIC, UTILS.getInternalName(), "appendNumber",
+                    Type.getMethodDescriptor(BUILDER, BUILDER, NUMBER), false);
+        } else {
+            // StringBuilder has an append overload for every other value type
+            insertAppend(type);
+        }
+    }
+
+    /**
+     * Converts a value at the top of the stack into a string. Char sequences are kept as they are.
+     * @param type The value type, as returned by {@link DataSource#insertValueGetter(DataSourceContext, String)}
+     * @return The type that remains in the stack
+     */
+    protected Type insertStringValue(Type type) {
+        if (type.getSort() == Type.OBJECT) {
+            if (!type.equals(NUMBER)) return type;
+            type = OBJECT;
+        }
+
+        // String.valueOf(...)
+        mv.visitMethodInsn(INVOKESTATIC, STRING.getInternalName(), "valueOf",
+                Type.getMethodDescriptor(STRING, type), false);
+        return STRING;
+    }
+
+    /**
+     * Escapes the string at the top of the stack into the builder right below it.
+     * As it returns itself, the builder remains in the stack.
+     * @param escaper The escaper
+     */
+    protected void insertEscape(Escaper escaper) {
+        // Escaper.escapeInto(builder, ...)
+        mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeInto",
+                Type.getMethodDescriptor(BUILDER, BUILDER, CHAR_SEQUENCE), false);
+    }
+
+    /**
+     * Gets the options this method is being compiled with
+     * @return The options
+     */
+    public CompilerOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Gets the class holding the static escaping methods of an {@link Escaper}
+     * @param escaper The escaper
+     * @return The escaper class type
+     */
+    protected Type getEscaperType(Escaper escaper) {
+        return Type.getType(escaper.getOwner());
+    }
+
     /**
      * Adds the token list into the method
+     *
+     * When the method would get bigger than the size limit, the remaining tokens are moved into another method.
      */
     public void add(List<MustacheToken> tokens) throws CompilerException {
-        for(MustacheToken token : tokens) {
+        int limit = options.getMethodSizeLimit();
+
+        for(int i = 0; i < tokens.size(); i++) {
+            MustacheToken token = tokens.get(i);
+
+            if (limit > 0 && estimatedSize > 0 && !data.getDataContext(context).isEmpty() &&
+                    estimatedSize + MustacheToken.getEstimatedSize(tokens.subList(i, i + 1)) > limit) {
+                addOutline(tokens.subList(i, tokens.size()));
+                return;
+            }
+
+            // The section contents are counted as they are added
+            estimatedSize += token.getEstimatedSize();
             token.add(this);
         }
     }
 
+    /**
+     * Adds tokens into a new private method, invoking it with the output and the data items in context.
+     *
+     * The method has its own size limit, so it's split again if needed.
+     *
+     * @param tokens The tokens
+     */
+    protected void addOutline(List<MustacheToken> tokens) throws CompilerException {
+        List<LocalVariable> vars = new ArrayList<>(data.getDataContext(context));
+        String methodName = compiler.insertOutlineMethod();
+
+        BytecodeGenerator generator = createGenerator();
+        generator.templateName = templateName;
+        generator.startOutline(methodName, vars);
+        generator.add(tokens);
+        generator.endPartial();
+
+        insertOutlineInvoke(methodName, vars);
+    }
+
+    /**
+     * Invokes a method started by {@link #startOutline(String, List)}
+     * @param methodName The method name
+     * @param vars The data items passed to the method
+     */
+    protected void insertOutlineInvoke(String methodName, List<LocalVariable> vars) {
+        clearStack();
+
+        // method(builder, data...)
+        builderVar.load(mv);
+
+        for(LocalVariable var : vars) {
+            var.load(mv);
+        }
+
+        mv.visitMethodInsn(INVOKESTATIC, compiler.getClassType().getInternalName(), methodName,
+                getOutlineDescriptor(vars), false);
+
+        estimatedSize += 8 + vars.size();
+    }
+
     /**
      * Adds a raw text
      */
     public void addText(String str) {
-        String desc;
+        Type type;
 
         // Loads the builder into the stack
         loadVarStack(builderVar);
@@ -196,16 +528,16 @@ public class BytecodeGenerator {
 
             // Loads the char into the stack
             CompilerUtils.loadInteger(mv, c);
-            desc = Type.getMethodDescriptor(BUILDER, Type.CHAR_TYPE);
+            type = Type.CHAR_TYPE;
         } else {
             // Uses append(String)
             // Loads a string into the stack
             mv.visitLdcInsn(str);
-            desc = Type.getMethodDescriptor(BUILDER, STRING);
+            type = STRING;
         }
 
         // builder.append(...)
-        mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER.getInternalName(), "append", desc, false);
+        insertAppend(type);
 
         // As it returns itself, the builder remains in the stack
     }
@@ -214,18 +546,218 @@ public class BytecodeGenerator {
      * Adds a variable
      */
     public void addVariable(String variable, boolean escaped) throws CompilerException {
+        addVariable(variable, escaped ? options.getEscaper() : Escaper.NONE);
+    }
+
+    /**
+     * Adds a variable escaped by a specific escaper
+     */
+    public void addVariable(String variable, Escaper escaper) throws CompilerException {
+        if (addQuotedVariable(variable, escaper)) return;
+
+        escaper = getVariableEscaper(variable, escaper);
+
         // Loads the builder into the stack
         loadVarStack(builderVar);
 
-        // Loads a string into the stack
-        data.insertStringGetter(context, variable, escaped);
-
-        // builder.append(...)
-        mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER.getInternalName(), "append", Type.getMethodDescriptor(BUILDER, STRING), false);
+        // Loads the value into the stack
+        MemberType value = data.insertValueGetter(context, variable);
+        Type type = value.clazzType;
+
+        if (value.clazz.isEnum()) {
+            // Appends the constant names, escaped ahead of time
+            insertEnumName(value.clazz, escaper);
+            insertAppend(STRING);
+        } else if (escaper.isEnabled() && options.getEscapeCacheSize() > 0) {
+            // Looks up the escaped string in the cache before escaping it
+            insertStringValue(type);
+            insertCachedEscape(escaper);
+            insertAppend(STRING);
+        } else if (escaper.isEnabled()) {
+            // Escapes the string straight into the builder
+            insertStringValue(type);
+            insertEscape(escaper);
+        } else {
+            // builder.append(...)
+            insertAppendValue(type);
+        }
 
         // As it returns itself, the builder remains in the stack
     }
 
+    /**
+     * Writes the escaped value as a string literal when the escaper has quotes
+     * @return Whether the value was written
+     */
+    protected boolean addQuotedVariable(String variable, Escaper escaper) throws CompilerException {
+        String quote = escaper.getQuote();
+        if (quote == null) return false;
+
+        addText(quote);
+        addVariable(variable, escaper.unquoted());
+        addText(quote);
+        return true;
+    }
+
+    /**
+     * Gets the escaper a variable actually needs.
+     *
+     * Values that can't contain anything to escape are never escaped,
+     * while trusted values are only written as they are where HTML escaping would apply.
+     */
+    protected Escaper getVariableEscaper(String variable, Escaper escaper) {
+        if (!escaper.isEnabled()) return escaper;
+
+        if (data.isEscapingSafe(context, variable)) {
+            // The value can't contain anything to escape
+            return Escaper.NONE;
+        } else if (escaper.isHtml() && data.isTrusted(context, variable)) {
+            // The value is trusted to be HTML
+            return Escaper.NONE;
+        }
+
+        return escaper;
+    }
+
+    /**
+     * Escapes the value at the top of the stack through the {@link EscapeCache}, which is only escaped when it's not cached
+     * @param escaper The escaper
+     */
+    protected void insertCachedEscape(Escaper escaper) {
+        Type owner = compiler.getClassType();
+        String cacheField = compiler.insertEscapeCache(escaper);
+        Label hit = new Label();
+        Label end = new Label();
+
+        // The cache is keyed by strings
+        mv.visitMethodInsn(INVOKESTATIC, STRING.getInternalName(), "valueOf",
+                Type.getMethodDescriptor(STRING, OBJECT), false);
+
+        // cached = ESCAPE_CACHE.get(value)
+        mv.visitInsn(DUP);
+        mv.visitFieldInsn(GETSTATIC, owner.getInternalName(), cacheField, ESCAPE_CACHE.getDescriptor());
+        mv.visitInsn(SWAP);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ESCAPE_CACHE.getInternalName(), "get",
+                Type.getMethodDescriptor(STRING, STRING), false);
+
+        // if (cached != null)
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFNONNULL, hit);
+        mv.visitInsn(POP);
+
+        // ESCAPE_CACHE.put(value, Escaper.escapeString(value))
+        mv.visitFieldInsn(GETSTATIC, owner.getInternalName(), cacheField, ESCAPE_CACHE.getDescriptor());
+        mv.visitInsn(SWAP);
+        mv.visitInsn(DUP);
+        mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeString",
+                Type.getMethodDescriptor(STRING, STRING), false);
+        mv.visitMethodInsn(INVOKEVIRTUAL, ESCAPE_CACHE.getInternalName(), "put",
+                Type.getMethodDescriptor(STRING, STRING, STRING), false);
+        mv.visitJumpInsn(GOTO, end);
+
+        // Drops the original value, keeping the cached one
+        mv.visitLabel(hit);
+        mv.visitInsn(SWAP);
+        mv.visitInsn(POP);
+
+        mv.visitLabel(end);
+    }
+
+    /**
+     * Converts the enum at the top of the stack into its escaped name.
+     *
+     * Every constant name is escaped while compiling, then the right one is picked by the constant ordinal.
+     *
+     * @param enumClass The enum class
+     * @param escaper The escaper
+     */
+    protected void insertEnumName(Class<?> enumClass, Escaper escaper) {
+        Object[] constants = enumClass.getEnumConstants();
+        Label[] labels = new Label[constants.length];
+        Label nullLabel = new Label();
+        Label defaultLabel = new Label();
+        Label end = new Label();
+
+        // if (value == null)
+        mv.visitInsn(DUP);
+        mv.visitJumpInsn(IFNULL, nullLabel);
+
+        if (constants.length > 0) {
+            for(int i = 0; i < labels.length; i++) {
+                labels[i] = new Label();
+            }
+
+            // switch(value.ordinal())
+            mv.visitInsn(DUP);
+            mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(enumClass), "ordinal", "()I", false);
+            mv.visitTableSwitchInsn(0, constants.length - 1, defaultLabel, labels);
+
+            for(int i = 0; i < constants.length; i++) {
+                // case i: "escaped name"
+                mv.visitLabel(labels[i]);
+                mv.visitInsn(POP);
+                mv.visitLdcInsn(escaper.escape(constants[i].toString()));
+                mv.visitJumpInsn(GOTO, end);
+            }
+        }
+
+        // default: The enum has changed since it was compiled
+        mv.visitLabel(defaultLabel);
+        mv.visitMethodInsn(INVOKESTATIC, STRING.getInternalName(), "valueOf",
+                Type.getMethodDescriptor(STRING, OBJECT), false);
+
+        if (escaper.isEnabled()) {
+            mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeString",
+                    Type.getMethodDescriptor(STRING, STRING), false);
+        }
+
+        mv.visitJumpInsn(GOTO, end);
+
+        // null
+        mv.visitLabel(nullLabel);
+        mv.visitInsn(POP);
+        mv.visitLdcInsn(escaper.escape("null"));
+
+        mv.visitLabel(end);
+    }
+
+    /**
+     * Adds the content of a section
+     * @param token The section
+     */
+    protected void addSectionContent(SectionToken token) throws CompilerException {
+        addSectionContent(token, token == sharedSection);
+    }
+
+    /**
+     * Adds the content of a section
+     * @param token The section
+     * @param shared Whether the content is rendered by a method shared by every place it's added with the same data items
+     */
+    protected void addSectionContent(SectionToken token, boolean shared) throws CompilerException {
+        List<LocalVariable> vars = new ArrayList<>(data.getDataContext(context));
+
+        if (!shared || vars.isEmpty()) {
+            add(token.content);
+            return;
+        }
+
+        BytecodeGenerator generator = createGenerator();
+        String desc = getOutlineDescriptor(vars);
+        String methodName = compiler.getSectionMethod(token, generator.getClass(), desc);
+
+        if (methodName == null) {
+            methodName = compiler.insertSectionMethod(token, generator.getClass(), desc);
+
+            generator.templateName = templateName;
+            generator.startOutline(methodName, vars);
+            generator.add(token.content);
+            generator.endPartial();
+        }
+
+        insertOutlineInvoke(methodName, vars);
+    }
+
     /**
      * Adds a section
      */
@@ -257,13 +789,13 @@ public class BytecodeGenerator {
         clearStack();
 
         // Loads a boolean into the stack
-        data.insertBooleanGetter(context, token.variable);
+        insertSectionBooleanGetter(token);
 
         // if(...) or if(!...)
         mv.visitJumpInsn(token.inverted ? IFNE : IFEQ, ifEnd);
 
         // Inserts all tokens inside the condition
-        add(token.content);
+        addSectionContent(token);
 
         // Clears again the whole stack
         clearStack();
@@ -301,7 +833,7 @@ public class BytecodeGenerator {
         }
 
         // Loads the object into the stack
-        MemberType member = data.insertDataGetter(context, token.variable);
+        MemberType member = insertSectionDataGetter(token);
         LocalVariable objectVar = insertLocalStart(member.clazzType.getDescriptor(), member.clazz, true, ifStart);
 
         // Stores it into a variable
@@ -321,7 +853,7 @@ public class BytecodeGenerator {
         data.loadDataItem(context, objectVar);
 
         // Inserts all tokens inside the condition
-        add(token.content);
+        addSectionContent(token);
 
         // Unloads the variable
         data.unloadDataItem(context, objectVar);
@@ -348,13 +880,13 @@ public class BytecodeGenerator {
         clearStack();
 
         // Loads the object into the stack
-        data.insertObjectGetter(context, token.variable);
+        insertSectionObjectGetter(token);
 
         // if(... == null) or if(... != null)
         mv.visitJumpInsn(token.inverted ? IFNONNULL : IFNULL, ifEnd);
 
         // Inserts all tokens inside the condition
-        add(token.content);
+        addSectionContent(token);
 
         // Clears again the whole stack
         clearStack();
@@ -383,7 +915,7 @@ public class BytecodeGenerator {
      */
     private void addLoop(SectionToken token, Label sectionStart) throws CompilerException {
         // Gets the array
-        MemberType member = data.insertArrayGetter(context, token.variable);
+        MemberType member = insertSectionArrayGetter(token);
 
         if (member.clazz.isArray()) {
             if (token.inverted) {
@@ -455,7 +987,7 @@ public class BytecodeGenerator {
         data.loadDataItem(context, varObject);
 
         // Inserts all tokens inside the loop
-        add(token.content);
+        addSectionContent(token);
 
         // Unloads the variable
         data.unloadDataItem(context, varObject);
@@ -505,7 +1037,7 @@ public class BytecodeGenerator {
             mv.visitJumpInsn(IFNE, sectionEnd);
         }
 
-        add(token.content);
+        addSectionContent(token);
 
         clearStack();
 
@@ -567,7 +1099,7 @@ public class BytecodeGenerator {
         data.loadDataItem(context, varObject);
 
         // Inserts all tokens inside the loop
-        add(token.content);
+        addSectionContent(token);
 
         // Unloads the variable
         data.unloadDataItem(context, varObject);
@@ -615,7 +1147,7 @@ public class BytecodeGenerator {
             mv.visitJumpInsn(IFEQ, sectionEnd);
         }
 
-        add(token.content);
+        addSectionContent(token);
 
         clearStack();
 
@@ -642,7 +1174,7 @@ public class BytecodeGenerator {
         clearStack();
 
         // Loads the lambda into the stack
-        MemberType lambdaType = data.insertLambdaGetter(context, token.variable);
+        MemberType lambdaType = insertSectionLambdaGetter(token);
 
         // Loads the builder into the stack
         builderVar.load(mv);
@@ -650,7 +1182,7 @@ public class BytecodeGenerator {
         String methodName = "lambda$" + name + "$" + lambdaCount;
         LambdaGenerator lambda = new LambdaGenerator(compiler, options, data);
         lambda.startLambda(this, lambdaType, methodName);
-        lambda.add(token.content);
+        lambda.addSectionContent(token, token == sharedSection);
         lambda.endLambda();
 
         // Loads all additional arguments into the stack
@@ -677,11 +1209,9 @@ public class BytecodeGenerator {
      * Adds an unknown section
      *
      * Checks the type in runtime and does the proper processing based on it.
-     * Adds a lot more bytecode and should be avoid whenever possible.
+     * The content is rendered by a method shared by every case, so it's only generated once.
      */
     public void addUnknownSection(SectionToken token) throws CompilerException {
-        // TODO move instructions inside to a new method and then call that method from here as needed
-        // TODO the method should be in the same format as the lambda, so we can use it in both cases
         Label switchEnd = new Label();
         Label switchDefault = new Label();
         Label booleanSection = new Label();
@@ -689,15 +1219,51 @@ public class BytecodeGenerator {
         Label dataSection = new Label();
         Label lambdaSection = new Label();
 
+        // The lookup switch keys have to be sorted
+        TreeMap<Integer, Label> cases = new TreeMap<>();
+        cases.put(MustacheType.BOOLEAN.ordinal(), booleanSection);
+        cases.put(MustacheType.ARRAY.ordinal(), arraySection);
+        cases.put(MustacheType.DATA.ordinal(), dataSection);
+        cases.put(MustacheType.LAMBDA.ordinal(), lambdaSection);
+
+        int[] keys = new int[cases.size()];
+        int i = 0;
+
+        for(int key : cases.keySet()) {
+            keys[i++] = key;
+        }
+
+        SectionToken parentShared = sharedSection;
+        LocalVariable parentValue = sectionValue;
+        LocalVariable valueVar = null;
+        sharedSection = token;
+
         clearStack();
 
-        // Adds the type ordinal to the stack
-        data.insertTypeGetter(context, token.variable);
+        if (data.isRuntimeTyped()) {
+            Label valueStart = new Label();
+            mv.visitLabel(valueStart);
+
+            // Object value = data.get(key)
+            data.insertObjectGetter(context, token.variable);
+            valueVar = insertLocalStart(OBJECT.getDescriptor(), Object.class, true, valueStart);
+            valueVar.store(mv);
+
+            // Adds the type ordinal of the value to the stack
+            valueVar.load(mv);
+            mv.visitMethodInsn(INVOKESTATIC, MUSTACHE_TYPE.getInternalName(), "getByObject",
+                    Type.getMethodDescriptor(MUSTACHE_TYPE, OBJECT), false);
+            mv.visitMethodInsn(INVOKEVIRTUAL, MUSTACHE_TYPE.getInternalName(), "ordinal",
+                    Type.getMethodDescriptor(Type.INT_TYPE), false);
+        } else {
+            // Adds the type ordinal to the stack
+            data.insertTypeGetter(context, token.variable);
+        }
+
+        sectionValue = valueVar;
 
         // switch(...)
-        mv.visitLookupSwitchInsn(switchDefault,
-                new int[]{MustacheType.BOOLEAN.ordinal(), MustacheType.ARRAY.ordinal(), MustacheType.DATA.ordinal(), MustacheType.LAMBDA.ordinal()},
-                new Label[]{booleanSection, arraySection, dataSection, lambdaSection});
+        mv.visitLookupSwitchInsn(switchDefault, keys, cases.values().toArray(new Label[0]));
 
         // case BOOLEAN
         mv.visitLabel(booleanSection);
@@ -729,24 +1295,171 @@ public class BytecodeGenerator {
         clearStack(); // Make sure the stack is empty
 
         mv.visitLabel(switchEnd);
+
+        if (valueVar != null) insertLocalEnd(valueVar, switchEnd);
+
+        sharedSection = parentShared;
+        sectionValue = parentValue;
+    }
+
+    /**
+     * Whether the value of a section was already loaded by {@link #addUnknownSection(SectionToken)}
+     */
+    private boolean isSectionValueLoaded(SectionToken token) {
+        return token == sharedSection && sectionValue != null;
+    }
+
+    /**
+     * Loads into the stack the boolean value of a section
+     */
+    protected void insertSectionBooleanGetter(SectionToken token) throws CompilerException {
+        if (isSectionValueLoaded(token)) {
+            // TemplateUtils.toBoolean(value)
+            sectionValue.load(mv);
+            mv.visitMethodInsn(INVOKESTATIC, UTILS.getInternalName(), "toBoolean",
+                    Type.getMethodDescriptor(Type.BOOLEAN_TYPE, OBJECT), false);
+        } else {
+            data.insertBooleanGetter(context, token.variable);
+        }
+    }
+
+    /**
+     * Loads into the stack the array value of a section
+     */
+    protected MemberType insertSectionArrayGetter(SectionToken token) throws CompilerException {
+        if (isSectionValueLoaded(token)) {
+            // TemplateUtils.toDataArray(value)
+            sectionValue.load(mv);
+            mv.visitMethodInsn(INVOKESTATIC, UTILS.getInternalName(), "toDataArray",
+                    Type.getMethodDescriptor(Type.getType(TemplateData[].class), OBJECT), false);
+            return new MemberType(TemplateData[].class, Type.getType(TemplateData[].class));
+        }
+
+        return data.insertArrayGetter(context, token.variable);
+    }
+
+    /**
+     * Loads into the stack the data value of a section
+     */
+    protected MemberType insertSectionDataGetter(SectionToken token) throws CompilerException {
+        if (isSectionValueLoaded(token)) {
+            // TemplateUtils.fromObject(value)
+            sectionValue.load(mv);
+            mv.visitMethodInsn(INVOKESTATIC, UTILS.getInternalName(), "fromObject",
+                    Type.getMethodDescriptor(Type.getType(TemplateData.class), OBJECT), false);
+            return new MemberType(TemplateData.class, Type.getType(TemplateData.class));
+        }
+
+        return data.insertDataGetter(context, token.variable);
+    }
+
+    /**
+     * Loads into the stack the lambda value of a section
+     */
+    protected MemberType insertSectionLambdaGetter(SectionToken token) throws CompilerException {
+        if (isSectionValueLoaded(token)) {
+            // (MustacheLambda) value
+            sectionValue.load(mv);
+            mv.visitTypeInsn(CHECKCAST, LAMBDA.getInternalName());
+            return new MemberType(data.getDataClass(), data.getDataType());
+        }
+
+        return data.insertLambdaGetter(context, token.variable);
+    }
+
+    /**
+     * Loads into the stack the object value of a section
+     */
+    protected void insertSectionObjectGetter(SectionToken token) throws CompilerException {
+        if (isSectionValueLoaded(token)) {
+            sectionValue.load(mv);
+        } else {
+            data.insertObjectGetter(context, token.variable);
+        }
+    }
+
+    /**
+     * Adds a partial resolved through the {@link PartialResolver},
+     * compiling its tokens inline
+     * @param partial The partial name
+     * @return Whether the partial was resolved
+     */
+    protected boolean addResolvedPartial(String partial) throws CompilerException {
+        List<MustacheToken> tokens = compiler.resolvePartial(options, templateName, partial);
+        if (tokens == null) return false;
+
+        if (compiler.isRecursivePartial(options, templateName, partial)) {
+            // Recursive partials can't be inlined
+            addPartialMethod(partial, tokens);
+            return true;
+        }
+
+        // Nested partials are resolved relative to this partial
+        String parentName = templateName;
+        templateName = partial;
+
+        add(tokens);
+
+        templateName = parentName;
+        return true;
+    }
+
+    /**
+     * Adds a recursive partial, invoking a private method that renders it.
+     *
+     * The method only receives the current data item, so it can't access the data outside of it.
+     *
+     * @param partial The partial name
+     * @param tokens The partial tokens
+     */
+    protected void addPartialMethod(String partial, List<MustacheToken> tokens) throws CompilerException {
+        List<LocalVariable> vars = data.getDataContext(context);
+
+        if (vars.isEmpty()) {
+            throw new CompilerException("No data item available for the partial " + partial);
+        }
+
+        LocalVariable dataItem = vars.get(vars.size() - 1);
+        String desc = Type.getMethodDescriptor(Type.VOID_TYPE, getOutputType(), Type.getType(dataItem.desc));
+        String methodName = compiler.getPartialMethod(partial, desc);
+
+        if (methodName == null) {
+            // The method is registered before generating it, so it can invoke itself
+            methodName = compiler.insertPartialMethod(partial, desc);
+
+            BytecodeGenerator generator = createGenerator();
+            generator.templateName = partial;
+            generator.startPartial(methodName, dataItem);
+            generator.add(tokens);
+            generator.endPartial();
+        }
+
+        clearStack();
+
+        // partial(builder, data)
+        builderVar.load(mv);
+        dataItem.load(mv);
+        mv.visitMethodInsn(INVOKESTATIC, compiler.getClassType().getInternalName(), methodName, desc, false);
     }
 
     /**
      * Adds a partial
      */
     public void addPartial(String partial) throws CompilerException {
-        // Loads the builder into the stack
-        loadVarStack(builderVar);
+        if (addResolvedPartial(partial)) return;
 
+        clearStack();
+
+        // Loads the partial and the data into the stack
         data.insertPartialGetter(context, partial);
 
-        // partial.render(data)
-        mv.visitMethodInsn(INVOKEINTERFACE, TEMPLATE.getInternalName(), "render",
-                Type.getMethodDescriptor(STRING, OBJECT), true);
+        // Loads the builder into the stack, right below the data
+        builderVar.load(mv);
+        mv.visitInsn(SWAP);
 
-        // builder.append(...)
-        mv.visitMethodInsn(INVOKEVIRTUAL, BUILDER.getInternalName(), "append",
-                Type.getMethodDescriptor(BUILDER, STRING), false);
+        // partial.render(builder, data)
+        mv.visitMethodInsn(INVOKEINTERFACE, TEMPLATE.getInternalName(), "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, BUILDER, OBJECT), true);
     }
 
 }
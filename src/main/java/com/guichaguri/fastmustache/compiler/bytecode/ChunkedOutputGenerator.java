@@ -0,0 +1,51 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.output.ChunkedOutput;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the render(T, ChunkedOutput) method.
+ *
+ * It works the same way as the {@link AppendableGenerator}, but it invokes the {@link ChunkedOutput} methods directly,
+ * so the raw text is passed as strings that can be referenced instead of copied.
+ */
+public class ChunkedOutputGenerator extends AppendableGenerator {
+
+    public static final Type CHUNKED_OUTPUT = Type.getType(ChunkedOutput.class);
+
+    public ChunkedOutputGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data, CHUNKED_OUTPUT, ChunkedOutput.class);
+    }
+
+    @Override
+    protected BytecodeGenerator createGenerator() {
+        return new ChunkedOutputGenerator(compiler, options, data);
+    }
+
+    @Override
+    protected String[] getExceptions() {
+        return null;
+    }
+
+    @Override
+    protected void insertAppend(Type type) {
+        Type argType;
+
+        if (type == Type.CHAR_TYPE || type.equals(STRING)) {
+            // Uses append(char) and append(String)
+            argType = type;
+        } else {
+            // Uses append(CharSequence), which copies the sequence
+            argType = CHAR_SEQUENCE;
+        }
+
+        // out.append(...)
+        mv.visitMethodInsn(INVOKEVIRTUAL, CHUNKED_OUTPUT.getInternalName(), "append",
+                Type.getMethodDescriptor(CHUNKED_OUTPUT, argType), false);
+    }
+
+}
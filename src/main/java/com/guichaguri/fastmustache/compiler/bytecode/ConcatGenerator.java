@@ -0,0 +1,214 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.compiler.bytecode.data.MemberType;
+import com.guichaguri.fastmustache.compiler.parser.tokens.MustacheToken;
+import com.guichaguri.fastmustache.compiler.parser.tokens.TextToken;
+import com.guichaguri.fastmustache.compiler.parser.tokens.VariableToken;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates a render(T) method that concatenates the whole output with a single invokedynamic instruction.
+ *
+ * The static text becomes the recipe of {@code StringConcatFactory.makeConcatWithConstants}, and only the variable values
+ * are passed as arguments, so the JVM can size and fill the resulting string exactly.
+ * It requires Java 9 and only supports templates made of text and variables.
+ */
+public class ConcatGenerator extends BytecodeGenerator {
+
+    private static final Handle CONCAT_FACTORY = new Handle(H_INVOKESTATIC, "java/lang/invoke/StringConcatFactory",
+            "makeConcatWithConstants", "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/String;[Ljava/lang/Object;)Ljava/lang/invoke/CallSite;", false);
+
+    /**
+     * The first class file version that supports the string concatenation, which is Java 9
+     */
+    public static final int MINIMUM_CLASS_VERSION = 53;
+
+    private static final char TAG_ARGUMENT = '\1';
+    private static final char TAG_CONSTANT = '\2';
+
+    private static final int MAX_SLOTS = 200; // The maximum amount of argument slots for a single concatenation
+    private static final int MAX_RECIPE_LENGTH = 16384; // Keeps the recipe constant well below the constant pool limit
+
+    private final StringBuilder recipe = new StringBuilder();
+    private final List<Type> arguments = new ArrayList<>();
+    private final List<Object> constants = new ArrayList<>();
+    private int slots = 0;
+
+    public ConcatGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data);
+    }
+
+    /**
+     * Checks whether a template can be rendered by a single concatenation
+     * @param tokens The template tokens
+     * @return Whether it only has text and variables
+     */
+    public static boolean isFlat(List<MustacheToken> tokens) {
+        for(MustacheToken token : tokens) {
+            if (!(token instanceof TextToken) && !(token instanceof VariableToken)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts building the render method
+     */
+    public void start() throws CompilerException {
+        Type dataType = data.getDataType();
+        Class<?> dataClass = data.getDataClass();
+
+        mv = compiler.getClassWriter().visitMethod(ACC_PUBLIC, "render", Type.getMethodDescriptor(STRING, dataType), null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        thisVar = insertLocalStart(compiler.getClassType().getDescriptor(), null, true, start);
+        dataVar = insertLocalStart(dataType.getDescriptor(), dataClass, true, start);
+
+        name = "render";
+        context = data.createContext(this, mv, dataVar);
+
+        data.loadDataItem(context, dataVar);
+    }
+
+    /**
+     * Adds the tokens into the recipe.
+     *
+     * The method is never split, as the arguments are kept in the stack until the end.
+     */
+    @Override
+    public void add(List<MustacheToken> tokens) throws CompilerException {
+        for(MustacheToken token : tokens) {
+            token.add(this);
+        }
+    }
+
+    @Override
+    public void end() {
+        // return concat(...)
+        insertConcat();
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(end);
+        endMethod();
+    }
+
+    /**
+     * Adds a raw text into the recipe
+     */
+    @Override
+    public void addText(String str) {
+        if (str.length() > MAX_RECIPE_LENGTH) {
+            // Huge texts are loaded as regular constants instead
+            insertArgumentSlot(STRING);
+            mv.visitLdcInsn(str);
+            addArgument(STRING);
+            return;
+        }
+
+        if (recipe.length() + str.length() > MAX_RECIPE_LENGTH) {
+            insertPartialConcat();
+        }
+
+        for(int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+
+            if (c == TAG_ARGUMENT || c == TAG_CONSTANT) {
+                // The tag characters can't be in the recipe, so they are passed as constants
+                recipe.append(TAG_CONSTANT);
+                constants.add(String.valueOf(c));
+            } else {
+                recipe.append(c);
+            }
+        }
+    }
+
+    /**
+     * Adds a variable as an argument of the concatenation
+     */
+    @Override
+    public void addVariable(String variable, Escaper escaper) throws CompilerException {
+        if (addQuotedVariable(variable, escaper)) return;
+
+        escaper = getVariableEscaper(variable, escaper);
+
+        // Makes sure the value will fit before it's loaded
+        insertArgumentSlot(Type.LONG_TYPE);
+
+        // Loads the value into the stack
+        MemberType value = data.insertValueGetter(context, variable);
+        Type type = value.clazzType;
+
+        if (value.clazz.isEnum()) {
+            // The constant names are escaped ahead of time
+            insertEnumName(value.clazz, escaper);
+            type = STRING;
+        } else if (escaper.isEnabled() && options.getEscapeCacheSize() > 0) {
+            // Looks up the escaped string in the cache before escaping it
+            insertStringValue(type);
+            insertCachedEscape(escaper);
+            type = STRING;
+        } else if (escaper.isEnabled()) {
+            // Escaper.escapeString(String.valueOf(...))
+            insertStringValue(type);
+            mv.visitMethodInsn(INVOKESTATIC, STRING.getInternalName(), "valueOf",
+                    Type.getMethodDescriptor(STRING, OBJECT), false);
+            mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeString",
+                    Type.getMethodDescriptor(STRING, STRING), false);
+            type = STRING;
+        }
+
+        // Primitives and objects are converted by the concatenation itself
+        addArgument(type);
+    }
+
+    private void addArgument(Type type) {
+        recipe.append(TAG_ARGUMENT);
+        arguments.add(type);
+        slots += type.getSize();
+    }
+
+    /**
+     * Concatenates what was added so far when another argument wouldn't fit,
+     * keeping the partial result as the first argument of the next concatenation
+     * @param type The type of the argument that will be added
+     */
+    private void insertArgumentSlot(Type type) {
+        if (slots + type.getSize() > MAX_SLOTS) {
+            insertPartialConcat();
+        }
+    }
+
+    private void insertPartialConcat() {
+        insertConcat();
+        addArgument(STRING);
+    }
+
+    /**
+     * Concatenates the arguments in the stack into a string, resetting the recipe
+     */
+    private void insertConcat() {
+        String descriptor = Type.getMethodDescriptor(STRING, arguments.toArray(new Type[0]));
+
+        Object[] args = new Object[constants.size() + 1];
+        args[0] = recipe.toString();
+
+        for(int i = 0; i < constants.size(); i++) {
+            args[i + 1] = constants.get(i);
+        }
+
+        mv.visitInvokeDynamicInsn("concat", descriptor, CONCAT_FACTORY, args);
+
+        recipe.setLength(0);
+        arguments.clear();
+        constants.clear();
+        slots = 0;
+    }
+
+}
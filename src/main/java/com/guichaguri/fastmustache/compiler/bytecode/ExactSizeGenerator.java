@@ -0,0 +1,146 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.output.PieceBuilder;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates a render(T) method that sizes the output exactly before copying it.
+ *
+ * The first pass collects the static text and the variable strings into a {@link PieceBuilder}, summing their lengths.
+ * The second pass copies them into a buffer of the exact length, so it never resizes.
+ */
+public class ExactSizeGenerator extends AppendableGenerator {
+
+    public static final Type PIECE_BUILDER = Type.getType(PieceBuilder.class);
+
+    public ExactSizeGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data);
+    }
+
+    /**
+     * Starts building the render method
+     * @param pieceCount The estimated amount of pieces
+     */
+    public void start(int pieceCount) throws CompilerException {
+        Type dataType = data.getDataType();
+        Class<?> dataClass = data.getDataClass();
+
+        mv = compiler.getClassWriter().visitMethod(ACC_PUBLIC, "render", Type.getMethodDescriptor(STRING, dataType), null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        thisVar = insertLocalStart(compiler.getClassType().getDescriptor(), null, true, start);
+        dataVar = insertLocalStart(dataType.getDescriptor(), dataClass, true, start);
+        builderVar = insertLocalStart(PIECE_BUILDER.getDescriptor(), PieceBuilder.class, true, start);
+
+        // pieces = new PieceBuilder(count)
+        mv.visitTypeInsn(NEW, PIECE_BUILDER.getInternalName());
+        mv.visitInsn(DUP);
+        CompilerUtils.loadInteger(mv, pieceCount);
+        mv.visitMethodInsn(INVOKESPECIAL, PIECE_BUILDER.getInternalName(), "<init>", "(I)V", false);
+        builderVar.store(mv);
+
+        name = "render";
+        context = data.createContext(this, mv, dataVar);
+
+        data.loadDataItem(context, dataVar);
+    }
+
+    @Override
+    protected Type getOutputType() {
+        return PIECE_BUILDER;
+    }
+
+    @Override
+    protected Class<?> getOutputClass() {
+        return PieceBuilder.class;
+    }
+
+    @Override
+    protected BytecodeGenerator createGenerator() {
+        return new ExactSizeGenerator(compiler, options, data);
+    }
+
+    @Override
+    protected void insertAppendValue(Type type) {
+        // Pieces are kept as strings
+        insertAppend(insertStringValue(type));
+    }
+
+    @Override
+    protected void insertEscape(Escaper escaper) {
+        // The unescaped parts of a string are kept as references to it, so only the replacements are new pieces
+        // Escaper.escapeInto(pieces, ...)
+        mv.visitMethodInsn(INVOKESTATIC, getEscaperType(escaper).getInternalName(), "escapeInto",
+                Type.getMethodDescriptor(APPENDABLE, APPENDABLE, CHAR_SEQUENCE), false);
+        mv.visitTypeInsn(CHECKCAST, PIECE_BUILDER.getInternalName());
+    }
+
+    @Override
+    public void end() {
+        // Loads the builder into the stack
+        loadVarStack(builderVar);
+
+        // return pieces.toString()
+        mv.visitMethodInsn(INVOKEVIRTUAL, PIECE_BUILDER.getInternalName(), "toString", Type.getMethodDescriptor(STRING), false);
+        mv.visitInsn(ARETURN);
+        mv.visitLabel(end);
+        endMethod();
+    }
+
+    @Override
+    protected void insertAppend(Type type) {
+        // pieces.append(...)
+        mv.visitMethodInsn(INVOKEVIRTUAL, PIECE_BUILDER.getInternalName(), "append",
+                Type.getMethodDescriptor(PIECE_BUILDER, CHAR_SEQUENCE), false);
+    }
+
+    /**
+     * Adds a raw text
+     *
+     * The text constant is kept as a reference, even if it's a single character
+     */
+    @Override
+    public void addText(String str) {
+        // Loads the builder into the stack
+        loadVarStack(builderVar);
+
+        // Loads the string into the stack
+        mv.visitLdcInsn(str);
+
+        // pieces.append(...)
+        insertAppend(STRING);
+    }
+
+    /**
+     * Adds a partial
+     *
+     * The partial is rendered through {@link com.guichaguri.fastmustache.template.Template#render(Object)},
+     * which sizes its own output and can't throw an IOException, and its string is kept as a single piece
+     */
+    @Override
+    public void addPartial(String partial) throws CompilerException {
+        if (addResolvedPartial(partial)) return;
+
+        clearStack();
+
+        // Loads the builder into the stack
+        loadVarStack(builderVar);
+
+        // Loads the partial and the data into the stack
+        data.insertPartialGetter(context, partial);
+
+        // partial.render(data)
+        mv.visitMethodInsn(INVOKEINTERFACE, TEMPLATE.getInternalName(), "render",
+                Type.getMethodDescriptor(STRING, OBJECT), true);
+
+        // pieces.append(...)
+        insertAppend(STRING);
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.output.GzipOutput;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Type;
+import java.nio.charset.StandardCharsets;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the render(T, GzipOutput) method.
+ *
+ * The raw text is deflated once into static fields, which are copied into the stream without being compressed again.
+ * Short texts are compressed along with the variables, as a block for them would take more space.
+ */
+public class GzipOutputGenerator extends ByteOutputGenerator {
+
+    public static final Type GZIP_OUTPUT = Type.getType(GzipOutput.class);
+
+    /**
+     * The minimum length in bytes for a text to be deflated ahead of time
+     */
+    private static final int MIN_DEFLATED_LENGTH = 64;
+
+    public GzipOutputGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data, GZIP_OUTPUT, GzipOutput.class);
+    }
+
+    @Override
+    protected BytecodeGenerator createGenerator() {
+        return new GzipOutputGenerator(compiler, options, data);
+    }
+
+    /**
+     * Adds a pre-deflated raw text
+     */
+    @Override
+    public void addText(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length < MIN_DEFLATED_LENGTH) {
+            super.addText(str);
+            return;
+        }
+
+        String owner = compiler.getClassType().getInternalName();
+
+        // Loads the output into the stack
+        loadVarStack(builderVar);
+
+        // Loads the encoded and the deflated text into the stack
+        String deflatedField = compiler.insertDeflatedConstant(str);
+        String field = compiler.insertByteConstant(str);
+        mv.visitFieldInsn(GETSTATIC, owner, field, BYTE_ARRAY.getDescriptor());
+        mv.visitFieldInsn(GETSTATIC, owner, deflatedField, BYTE_ARRAY.getDescriptor());
+
+        // out.appendDeflated(text, deflated)
+        mv.visitMethodInsn(INVOKEVIRTUAL, GZIP_OUTPUT.getInternalName(), "appendDeflated",
+                Type.getMethodDescriptor(GZIP_OUTPUT, BYTE_ARRAY, BYTE_ARRAY), false);
+
+        // As it returns itself, the output remains in the stack
+    }
+
+}
@@ -71,15 +71,7 @@ public class LambdaGenerator extends BytecodeGenerator {
         // Updates the descriptor to match the new argument list
         methodNode.desc = Type.getMethodDescriptor(Type.VOID_TYPE, getMethodArgumentTypes());
 
-        for(LocalVariable var : locals) {
-            if (!var.declared) continue;
-
-            mv.visitLocalVariable("var" + var.index, var.desc, null,
-                    var.start, var.end == null ? end : var.end, var.index);
-        }
-
-        mv.visitMaxs(10, locals.size());//TODO
-        mv.visitEnd();
+        endMethod();
 
         // Writes the class
         methodNode.accept(compiler.getClassWriter());
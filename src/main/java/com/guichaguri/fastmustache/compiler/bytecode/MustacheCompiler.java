@@ -1,27 +1,67 @@
 package com.guichaguri.fastmustache.compiler.bytecode;
 
 import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.compiler.parser.MustacheParser;
+import com.guichaguri.fastmustache.compiler.parser.ParseException;
 import com.guichaguri.fastmustache.compiler.parser.tokens.MustacheToken;
+import com.guichaguri.fastmustache.compiler.parser.tokens.PartialToken;
+import com.guichaguri.fastmustache.compiler.parser.tokens.SectionToken;
 import com.guichaguri.fastmustache.compiler.parser.tokens.TextToken;
+import com.guichaguri.fastmustache.escaper.EscapeCache;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.output.ArrayByteOutput;
 import com.guichaguri.fastmustache.template.CompilerOptions;
+import com.guichaguri.fastmustache.template.PartialResolver;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import static com.guichaguri.fastmustache.compiler.bytecode.BytecodeGenerator.*;
 import static org.objectweb.asm.Opcodes.*;
 
 public class MustacheCompiler {
 
+    private static final String CAPACITY_FIELD = "capacity";
+
+    // The largest initializer instructions take 12 bytes, and the initializer methods stay far from the 64KB limit
+    private static final int INITIALIZER_STEP_SIZE = 12;
+    private static final int MAX_INITIALIZER_SIZE = 32768;
+
     private final ClassWriter cw;
     private final Type classType;
     private final Type dataType;
+    private final String templateName;
+
+    private final Map<String, String> byteConstants = new LinkedHashMap<>();
+    private final Map<String, String> segmentConstants = new LinkedHashMap<>();
+    private final Map<String, String> deflatedConstants = new LinkedHashMap<>();
+    private final Map<Class<?>, String> escapeCaches = new LinkedHashMap<>();
+    private final Map<String, List<MustacheToken>> partials = new HashMap<>();
+    private final Map<String, Boolean> recursivePartials = new HashMap<>();
+    private final Map<String, String> partialMethods = new HashMap<>();
+    private final Map<SectionToken, Map<String, String>> sectionMethods = new IdentityHashMap<>();
+    private int outlineMethods = 0;
 
     public MustacheCompiler(String className, String templateName, Type dataType) {
+        this(className, templateName, dataType, 52);
+    }
+
+    public MustacheCompiler(String className, String templateName, Type dataType, int classVersion) {
         this.cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
         this.dataType = dataType;
+        this.templateName = templateName;
 
         String internalName = className.replace('.', '/');
         classType = Type.getObjectType(internalName);
@@ -29,7 +69,7 @@ public class MustacheCompiler {
         String signature = OBJECT.getDescriptor() + "L" +
                 TEMPLATE.getInternalName() + "<" + dataType.getDescriptor() + ">;";
 
-        cw.visit(52, ACC_PUBLIC + ACC_SUPER, internalName, signature,
+        cw.visit(classVersion, ACC_PUBLIC + ACC_SUPER, internalName, signature,
                 OBJECT.getInternalName(),
                 new String[]{TEMPLATE.getInternalName()});
 
@@ -44,10 +84,143 @@ public class MustacheCompiler {
         return dataType;
     }
 
+    public String getTemplateName() {
+        return templateName;
+    }
+
     ClassWriter getClassWriter() {
         return cw;
     }
 
+    /**
+     * Resolves and parses a partial through the {@link PartialResolver}.
+     * Each partial is resolved only once per class, as every render method inlines it.
+     * @param options The compiler options
+     * @param template The name of the template that includes the partial
+     * @param partial The partial name
+     * @return The partial tokens or {@code null} if it can't be resolved
+     * @throws CompilerException Thrown when the partial couldn't be read or parsed
+     */
+    public List<MustacheToken> resolvePartial(CompilerOptions options, String template, String partial) throws CompilerException {
+        PartialResolver resolver = options.getResolver();
+        if (resolver == null) return null;
+
+        String key = template + '\0' + partial;
+        if (partials.containsKey(key)) return partials.get(key);
+
+        List<MustacheToken> tokens = null;
+
+        try(Reader reader = resolver.resolve(template, partial)) {
+            if (reader != null) {
+                tokens = new MustacheParser(options, reader).parsePartial();
+            }
+        } catch(IOException | ParseException ex) {
+            throw new CompilerException(ex);
+        }
+
+        partials.put(key, tokens);
+        return tokens;
+    }
+
+    /**
+     * Checks whether a partial resolved through the {@link PartialResolver} ends up including itself
+     * @param options The compiler options
+     * @param template The name of the template that includes the partial
+     * @param partial The partial name
+     * @return Whether the partial is recursive
+     * @throws CompilerException Thrown when a partial couldn't be read or parsed
+     */
+    public boolean isRecursivePartial(CompilerOptions options, String template, String partial) throws CompilerException {
+        String key = template + '\0' + partial;
+        Boolean recursive = recursivePartials.get(key);
+
+        if (recursive == null) {
+            recursive = includesPartial(options, template, partial, partial, new HashSet<>());
+            recursivePartials.put(key, recursive);
+        }
+
+        return recursive;
+    }
+
+    private boolean includesPartial(CompilerOptions options, String template, String partial,
+                                    String target, Set<String> visited) throws CompilerException {
+        if (!visited.add(partial)) return false;
+
+        List<MustacheToken> tokens = resolvePartial(options, template, partial);
+        return tokens != null && includesPartial(options, partial, tokens, target, visited);
+    }
+
+    private boolean includesPartial(CompilerOptions options, String template, List<MustacheToken> tokens,
+                                    String target, Set<String> visited) throws CompilerException {
+        for(MustacheToken token : tokens) {
+            if (token instanceof PartialToken) {
+                String partial = ((PartialToken) token).partial;
+
+                if (partial.equals(target) && resolvePartial(options, template, partial) != null) return true;
+                if (includesPartial(options, template, partial, target, visited)) return true;
+            } else if (token instanceof SectionToken) {
+                if (includesPartial(options, template, ((SectionToken) token).content, target, visited)) return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Gets the method that renders a recursive partial
+     * @param partial The partial name
+     * @param desc The method descriptor
+     * @return The method name or {@code null} if it wasn't inserted yet
+     */
+    public String getPartialMethod(String partial, String desc) {
+        return partialMethods.get(partial + '\0' + desc);
+    }
+
+    /**
+     * Reserves a name for a method that renders a recursive partial
+     * @param partial The partial name
+     * @param desc The method descriptor
+     * @return The method name
+     */
+    public String insertPartialMethod(String partial, String desc) {
+        String name = "partial$" + partialMethods.size();
+        partialMethods.put(partial + '\0' + desc, name);
+        return name;
+    }
+
+    /**
+     * Gets the method that renders the content of a section
+     * @param section The section
+     * @param generator The class of the generator that renders the content
+     * @param desc The method descriptor
+     * @return The method name or {@code null} if it wasn't inserted yet
+     */
+    public String getSectionMethod(SectionToken section, Class<?> generator, String desc) {
+        Map<String, String> methods = sectionMethods.get(section);
+        return methods == null ? null : methods.get(generator.getName() + '\0' + desc);
+    }
+
+    /**
+     * Reserves a name for a method that renders the content of a section
+     * @param section The section
+     * @param generator The class of the generator that renders the content
+     * @param desc The method descriptor
+     * @return The method name
+     */
+    public String insertSectionMethod(SectionToken section, Class<?> generator, String desc) {
+        String name = "section$" + outlineMethods++;
+        sectionMethods.computeIfAbsent(section, (s) -> new HashMap<>()).put(generator.getName() + '\0' + desc, name);
+        return name;
+    }
+
+    /**
+     * Reserves a name for a method that renders tokens outlined from another method
+     * @return The method name
+     */
+    public String insertOutlineMethod() {
+        return "outline$" + outlineMethods++;
+    }
+
     /**
      * Inserts the default constructor
      */
@@ -97,6 +270,320 @@ public class MustacheCompiler {
         mv.visitEnd();
     }
 
+    /**
+     * Inserts the bridge render(StringBuilder, Object) method
+     */
+    public void insertObjectBuilderRender() {
+        Label start = new Label();
+        Label end = new Label();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_BRIDGE + ACC_SYNTHETIC, "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, BUILDER, OBJECT), null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        // render(builder, (T) obj)
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitTypeInsn(CHECKCAST, dataType.getInternalName());
+        mv.visitMethodInsn(INVOKEVIRTUAL, classType.getInternalName(), "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, BUILDER, dataType), false);
+        mv.visitInsn(RETURN);
+
+        mv.visitLabel(end);
+        mv.visitLocalVariable("this", classType.getDescriptor(), null, start, end, 0);
+        mv.visitLocalVariable("builder", BUILDER.getDescriptor(), null, start, end, 1);
+        mv.visitLocalVariable("obj", dataType.getDescriptor(), null, start, end, 2);
+        mv.visitMaxs(3, 3);
+        mv.visitEnd();
+    }
+
+    /**
+     * Inserts the bridge render(Object, Appendable) method
+     */
+    public void insertObjectAppendableRender() {
+        insertObjectOutputRender(APPENDABLE, new String[]{AppendableGenerator.IO_EXCEPTION});
+    }
+
+    /**
+     * Inserts the bridge render(Object, ByteOutput) method
+     */
+    public void insertObjectByteRender() {
+        insertObjectOutputRender(ByteOutputGenerator.BYTE_OUTPUT, null);
+    }
+
+    /**
+     * Inserts the bridge render(Object, ChunkedOutput) method
+     */
+    public void insertObjectChunkedRender() {
+        insertObjectOutputRender(ChunkedOutputGenerator.CHUNKED_OUTPUT, null);
+    }
+
+    /**
+     * Inserts the bridge render(Object, SegmentOutput) method
+     */
+    public void insertObjectSegmentRender() {
+        insertObjectOutputRender(SegmentOutputGenerator.SEGMENT_OUTPUT, null);
+    }
+
+    /**
+     * Inserts the bridge render(Object, GzipOutput) method
+     */
+    public void insertObjectGzipRender() {
+        insertObjectOutputRender(GzipOutputGenerator.GZIP_OUTPUT, null);
+    }
+
+    private void insertObjectOutputRender(Type outputType, String[] exceptions) {
+        Label start = new Label();
+        Label end = new Label();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC + ACC_BRIDGE + ACC_SYNTHETIC, "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, OBJECT, outputType), null, exceptions);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        // render((T) obj, out)
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitTypeInsn(CHECKCAST, dataType.getInternalName());
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, classType.getInternalName(), "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, dataType, outputType), false);
+        mv.visitInsn(RETURN);
+
+        mv.visitLabel(end);
+        mv.visitLocalVariable("this", classType.getDescriptor(), null, start, end, 0);
+        mv.visitLocalVariable("obj", dataType.getDescriptor(), null, start, end, 1);
+        mv.visitLocalVariable("out", outputType.getDescriptor(), null, start, end, 2);
+        mv.visitMaxs(3, 3);
+        mv.visitEnd();
+    }
+
+    /**
+     * Inserts the renderBytes(T) method, which presizes the output
+     * @param minimumLength The minimum length in bytes
+     */
+    public void insertRenderBytes(int minimumLength) {
+        Label start = new Label();
+        Label end = new Label();
+        Type arrayOutput = Type.getType(ArrayByteOutput.class);
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "renderBytes",
+                Type.getMethodDescriptor(ByteOutputGenerator.BYTE_ARRAY, dataType), null, null);
+        mv.visitCode();
+        mv.visitLabel(start);
+
+        // out = new ArrayByteOutput(length)
+        mv.visitTypeInsn(NEW, arrayOutput.getInternalName());
+        mv.visitInsn(DUP);
+        CompilerUtils.loadInteger(mv, minimumLength);
+        mv.visitMethodInsn(INVOKESPECIAL, arrayOutput.getInternalName(), "<init>", "(I)V", false);
+        mv.visitVarInsn(ASTORE, 2);
+
+        // render(data, out)
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 1);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, classType.getInternalName(), "render",
+                Type.getMethodDescriptor(Type.VOID_TYPE, dataType, ByteOutputGenerator.BYTE_OUTPUT), false);
+
+        // return out.toByteArray()
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, arrayOutput.getInternalName(), "toByteArray",
+                Type.getMethodDescriptor(ByteOutputGenerator.BYTE_ARRAY), false);
+        mv.visitInsn(ARETURN);
+
+        mv.visitLabel(end);
+        mv.visitLocalVariable("this", classType.getDescriptor(), null, start, end, 0);
+        mv.visitLocalVariable("data", dataType.getDescriptor(), null, start, end, 1);
+        mv.visitLocalVariable("out", arrayOutput.getDescriptor(), null, start, end, 2);
+        mv.visitMaxs(4, 3);
+        mv.visitEnd();
+    }
+
+    /**
+     * Inserts the field that keeps the estimated output length of the template
+     * @return The field name
+     */
+    public String insertCapacityField() {
+        cw.visitField(ACC_PRIVATE + ACC_SYNTHETIC, CAPACITY_FIELD, Type.INT_TYPE.getDescriptor(), null, null).visitEnd();
+        return CAPACITY_FIELD;
+    }
+
+    /**
+     * Inserts a static field containing the UTF-8 encoded text.
+     * The same text will share the same field.
+     * @param text The text
+     * @return The field name
+     */
+    public String insertByteConstant(String text) {
+        String field = byteConstants.get(text);
+        if (field != null) return field;
+
+        field = "TEXT" + byteConstants.size();
+        byteConstants.put(text, field);
+
+        return field;
+    }
+
+    /**
+     * Inserts a static field containing a shared read-only buffer with the UTF-8 encoded text.
+     * The same text will share the same field.
+     * @param text The text
+     * @return The field name
+     */
+    public String insertSegmentConstant(String text) {
+        return insertEncodedConstant(segmentConstants, "SEGMENT", SegmentOutputGenerator.BYTE_BUFFER, text);
+    }
+
+    /**
+     * Inserts a static field containing the UTF-8 encoded text, deflated as an independent block.
+     * The same text will share the same field.
+     * @param text The text
+     * @return The field name
+     */
+    public String insertDeflatedConstant(String text) {
+        return insertEncodedConstant(deflatedConstants, "DEFLATED", ByteOutputGenerator.BYTE_ARRAY, text);
+    }
+
+    /**
+     * Inserts a static field holding the shared {@link EscapeCache} of an escaper
+     * @param escaper The escaper
+     * @return The field name
+     */
+    public String insertEscapeCache(Escaper escaper) {
+        String field = escapeCaches.get(escaper.getOwner());
+        if (field != null) return field;
+
+        field = "ESCAPE_CACHE" + escapeCaches.size();
+        escapeCaches.put(escaper.getOwner(), field);
+
+        return field;
+    }
+
+    private String insertEncodedConstant(Map<String, String> constants, String prefix, Type type, String text) {
+        String field = constants.get(text);
+        if (field != null) return field;
+
+        field = prefix + constants.size();
+        constants.put(text, field);
+
+        // The field is created from the encoded text
+        insertByteConstant(text);
+
+        return field;
+    }
+
+    /**
+     * Inserts the static fields and their initializer, which encodes all static text and loads the escape caches.
+     *
+     * When there are too many fields for a single method, they are initialized in private methods
+     * invoked from the static initializer, which keeps every method within the size limit.
+     * @param options The compiler options
+     */
+    public void insertStaticInitializer(CompilerOptions options) {
+        List<Consumer<MethodVisitor>> steps = new ArrayList<>();
+
+        for(Map.Entry<String, String> constant : byteConstants.entrySet()) {
+            // TEXT = "...".getBytes(StandardCharsets.UTF_8)
+            steps.add((mv) -> {
+                mv.visitLdcInsn(constant.getKey());
+                mv.visitFieldInsn(GETSTATIC, "java/nio/charset/StandardCharsets", "UTF_8", "Ljava/nio/charset/Charset;");
+                mv.visitMethodInsn(INVOKEVIRTUAL, STRING.getInternalName(), "getBytes",
+                        "(Ljava/nio/charset/Charset;)[B", false);
+                mv.visitFieldInsn(PUTSTATIC, classType.getInternalName(), constant.getValue(),
+                        ByteOutputGenerator.BYTE_ARRAY.getDescriptor());
+            });
+        }
+
+        // SEGMENT = SegmentOutput.createSegment(TEXT)
+        addEncodedInitializers(steps, segmentConstants, SegmentOutputGenerator.SEGMENT_OUTPUT, "createSegment",
+                SegmentOutputGenerator.BYTE_BUFFER);
+
+        // DEFLATED = GzipOutput.deflate(TEXT)
+        addEncodedInitializers(steps, deflatedConstants, GzipOutputGenerator.GZIP_OUTPUT, "deflate",
+                ByteOutputGenerator.BYTE_ARRAY);
+
+        for(Map.Entry<Class<?>, String> cache : escapeCaches.entrySet()) {
+            // ESCAPE_CACHE = EscapeCache.getShared(Escaper.class, size)
+            steps.add((mv) -> {
+                mv.visitLdcInsn(Type.getType(cache.getKey()));
+                CompilerUtils.loadInteger(mv, options.getEscapeCacheSize());
+                mv.visitMethodInsn(INVOKESTATIC, ESCAPE_CACHE.getInternalName(), "getShared",
+                        Type.getMethodDescriptor(ESCAPE_CACHE, Type.getType(Class.class), Type.INT_TYPE), false);
+                mv.visitFieldInsn(PUTSTATIC, classType.getInternalName(), cache.getValue(), ESCAPE_CACHE.getDescriptor());
+            });
+        }
+
+        if (steps.isEmpty()) return;
+
+        int limit = options.getMethodSizeLimit();
+        if (limit <= 0 || limit > MAX_INITIALIZER_SIZE) limit = MAX_INITIALIZER_SIZE;
+
+        int stepsPerMethod = Math.max(limit / INITIALIZER_STEP_SIZE, 1);
+        boolean split = steps.size() > stepsPerMethod;
+
+        // Final fields can only be set in the static initializer itself
+        int access = ACC_PRIVATE + ACC_STATIC + ACC_SYNTHETIC + (split ? 0 : ACC_FINAL);
+        insertStaticFields(access, byteConstants, ByteOutputGenerator.BYTE_ARRAY);
+        insertStaticFields(access, segmentConstants, SegmentOutputGenerator.BYTE_BUFFER);
+        insertStaticFields(access, deflatedConstants, ByteOutputGenerator.BYTE_ARRAY);
+        insertStaticFields(access, escapeCaches, ESCAPE_CACHE);
+
+        if (!split) {
+            insertInitializer(ACC_STATIC, "<clinit>", steps);
+            return;
+        }
+
+        MethodVisitor mv = cw.visitMethod(ACC_STATIC, "<clinit>", "()V", null, null);
+        mv.visitCode();
+
+        for(int i = 0; i < steps.size(); i += stepsPerMethod) {
+            String name = "constants$" + (i / stepsPerMethod);
+            insertInitializer(ACC_PRIVATE + ACC_STATIC + ACC_SYNTHETIC, name,
+                    steps.subList(i, Math.min(i + stepsPerMethod, steps.size())));
+
+            mv.visitMethodInsn(INVOKESTATIC, classType.getInternalName(), name, "()V", false);
+        }
+
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void insertInitializer(int access, String name, List<Consumer<MethodVisitor>> steps) {
+        MethodVisitor mv = cw.visitMethod(access, name, "()V", null, null);
+        mv.visitCode();
+
+        for(Consumer<MethodVisitor> step : steps) {
+            step.accept(mv);
+        }
+
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void insertStaticFields(int access, Map<?, String> fields, Type type) {
+        for(String field : fields.values()) {
+            cw.visitField(access, field, type.getDescriptor(), null, null).visitEnd();
+        }
+    }
+
+    private void addEncodedInitializers(List<Consumer<MethodVisitor>> steps, Map<String, String> constants,
+                                        Type owner, String method, Type type) {
+        for(Map.Entry<String, String> constant : constants.entrySet()) {
+            steps.add((mv) -> {
+                mv.visitFieldInsn(GETSTATIC, classType.getInternalName(), byteConstants.get(constant.getKey()),
+                        ByteOutputGenerator.BYTE_ARRAY.getDescriptor());
+                mv.visitMethodInsn(INVOKESTATIC, owner.getInternalName(), method,
+                        Type.getMethodDescriptor(type, ByteOutputGenerator.BYTE_ARRAY), false);
+                mv.visitFieldInsn(PUTSTATIC, classType.getInternalName(), constant.getValue(), type.getDescriptor());
+            });
+        }
+    }
+
     /**
      * Inserts the render(T) method
      * @param options The compiler options
@@ -105,8 +592,125 @@ public class MustacheCompiler {
      * @throws CompilerException Thrown when an error occurs while generating the instructions
      */
     public void insertRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        if (isConcatenated(options, tokens)) {
+            // Concatenates the whole template at once
+            ConcatGenerator generator = new ConcatGenerator(this, options, data);
+            generator.start();
+            generator.add(tokens);
+            generator.end();
+            return;
+        }
+
+        if (options.isExactSizingEnabled()) {
+            ExactSizeGenerator generator = new ExactSizeGenerator(this, options, data);
+            generator.start(tokens.size());
+            generator.add(tokens);
+            generator.end();
+            return;
+        }
+
+        // Creates the builder and renders into it
         BytecodeGenerator generator = new BytecodeGenerator(this, options, data);
         generator.start(TextToken.getMinimumLength(tokens));
+        generator.addBuilderRender();
+        generator.end();
+    }
+
+    /**
+     * Checks whether render(T) can be a single invokedynamic string concatenation.
+     *
+     * The builder pool, the adaptive capacity and the exact sizing all take precedence over it,
+     * as the concatenation doesn't use a builder at all.
+     */
+    private boolean isConcatenated(CompilerOptions options, List<MustacheToken> tokens) {
+        if (options.isBuilderPoolEnabled() || options.isAdaptiveCapacityEnabled() || options.isExactSizingEnabled()) {
+            return false;
+        }
+
+        return options.getClassVersion() >= ConcatGenerator.MINIMUM_CLASS_VERSION && ConcatGenerator.isFlat(tokens) &&
+                (options.getMethodSizeLimit() <= 0 || MustacheToken.getEstimatedSize(tokens) <= options.getMethodSizeLimit());
+    }
+
+    /**
+     * Inserts the render(StringBuilder, T) method
+     * @param options The compiler options
+     * @param data The data manager
+     * @param tokens The token list
+     * @throws CompilerException Thrown when an error occurs while generating the instructions
+     */
+    public void insertBuilderRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        BuilderGenerator generator = new BuilderGenerator(this, options, data);
+        generator.start();
+        generator.add(tokens);
+        generator.end();
+    }
+
+    /**
+     * Inserts the render(T, Appendable) method
+     * @param options The compiler options
+     * @param data The data manager
+     * @param tokens The token list
+     * @throws CompilerException Thrown when an error occurs while generating the instructions
+     */
+    public void insertAppendableRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        AppendableGenerator generator = new AppendableGenerator(this, options, data);
+        generator.start();
+        generator.add(tokens);
+        generator.end();
+    }
+
+    /**
+     * Inserts the render(T, ByteOutput) method
+     * @param options The compiler options
+     * @param data The data manager
+     * @param tokens The token list
+     * @throws CompilerException Thrown when an error occurs while generating the instructions
+     */
+    public void insertByteRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        ByteOutputGenerator generator = new ByteOutputGenerator(this, options, data);
+        generator.start();
+        generator.add(tokens);
+        generator.end();
+    }
+
+    /**
+     * Inserts the render(T, ChunkedOutput) method
+     * @param options The compiler options
+     * @param data The data manager
+     * @param tokens The token list
+     * @throws CompilerException Thrown when an error occurs while generating the instructions
+     */
+    public void insertChunkedRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        ChunkedOutputGenerator generator = new ChunkedOutputGenerator(this, options, data);
+        generator.start();
+        generator.add(tokens);
+        generator.end();
+    }
+
+    /**
+     * Inserts the render(T, SegmentOutput) method
+     * @param options The compiler options
+     * @param data The data manager
+     * @param tokens The token list
+     * @throws CompilerException Thrown when an error occurs while generating the instructions
+     */
+    public void insertSegmentRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        SegmentOutputGenerator generator = new SegmentOutputGenerator(this, options, data);
+        generator.start();
+        generator.add(tokens);
+        generator.end();
+    }
+
+    /**
+     * Inserts the render(T, GzipOutput) method
+     * @param options The compiler options
+     * @param data The data manager
+     * @param tokens The token list
+     * @throws CompilerException Thrown when an error occurs while generating the instructions
+     */
+    public void insertGzipRender(CompilerOptions options, DataSource data, List<MustacheToken> tokens) throws CompilerException {
+        GzipOutputGenerator generator = new GzipOutputGenerator(this, options, data);
+        generator.start();
         generator.add(tokens);
         generator.end();
     }
@@ -0,0 +1,62 @@
+package com.guichaguri.fastmustache.compiler.bytecode;
+
+import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.output.SegmentOutput;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import org.objectweb.asm.Type;
+import java.nio.charset.StandardCharsets;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Generates the render(T, SegmentOutput) method.
+ *
+ * The raw text is stored in shared read-only buffers, which are appended as segments instead of being copied.
+ * Short texts are still copied, as a segment for them would cost more than the copy.
+ */
+public class SegmentOutputGenerator extends ByteOutputGenerator {
+
+    public static final Type SEGMENT_OUTPUT = Type.getType(SegmentOutput.class);
+    public static final Type BYTE_BUFFER = Type.getType(java.nio.ByteBuffer.class);
+
+    /**
+     * The minimum length in bytes for a text to be shared as a segment
+     */
+    private static final int MIN_SEGMENT_LENGTH = 32;
+
+    public SegmentOutputGenerator(MustacheCompiler compiler, CompilerOptions options, DataSource data) {
+        super(compiler, options, data, SEGMENT_OUTPUT, SegmentOutput.class);
+    }
+
+    @Override
+    protected BytecodeGenerator createGenerator() {
+        return new SegmentOutputGenerator(compiler, options, data);
+    }
+
+    /**
+     * Adds a shared raw text segment
+     */
+    @Override
+    public void addText(String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length < MIN_SEGMENT_LENGTH) {
+            super.addText(str);
+            return;
+        }
+
+        // Loads the output into the stack
+        loadVarStack(builderVar);
+
+        // Loads the shared segment into the stack
+        String field = compiler.insertSegmentConstant(str);
+        mv.visitFieldInsn(GETSTATIC, compiler.getClassType().getInternalName(), field, BYTE_BUFFER.getDescriptor());
+
+        // out.appendSegment(segment)
+        mv.visitMethodInsn(INVOKEVIRTUAL, SEGMENT_OUTPUT.getInternalName(), "appendSegment",
+                Type.getMethodDescriptor(SEGMENT_OUTPUT, BYTE_BUFFER), false);
+
+        // As it returns itself, the output remains in the stack
+    }
+
+}
@@ -98,6 +98,86 @@ public class ClassDataSource implements DataSource {
         }
     }
 
+    @Override
+    public MemberType insertValueGetter(DataSourceContext context, String key) throws CompilerException {
+        MemberType member = insertGetter(context, key, true);
+        Class<?> type = member.clazz;
+
+        if(type == int.class || type == short.class || type == byte.class) {
+            // Smaller integers are already ints in the stack
+            return new MemberType(int.class, Type.INT_TYPE);
+        } else if(type.isPrimitive() || type == String.class || type.isEnum()) {
+            return member;
+        } else if(CharSequence.class.isAssignableFrom(type)) {
+            return new MemberType(CharSequence.class, CHAR_SEQUENCE);
+        } else if(type == Integer.class || type == Long.class || type == Short.class || type == Byte.class ||
+                type == Double.class || type == Float.class) {
+            return new MemberType(Number.class, NUMBER);
+        }
+
+        // String.valueOf(...)
+        context.mv.visitMethodInsn(INVOKESTATIC, STRING.getInternalName(), "valueOf",
+                Type.getMethodDescriptor(STRING, OBJECT), false);
+        return new MemberType(String.class, STRING);
+    }
+
+    @Override
+    public boolean isEscapingSafe(DataSourceContext context, String key) {
+        CompilerOptions options = context.generator.getOptions();
+
+        if (TemplateUtils.isImplicitIterator(key)) {
+            return options.isSafeType(context.vars.getLast().descClass);
+        }
+
+        Member member = findLastMember(context, key);
+
+        if(member instanceof Method) {
+            return options.isSafeType(((Method) member).getReturnType());
+        } else if(member instanceof Field) {
+            return options.isSafeType(((Field) member).getType());
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean isTrusted(DataSourceContext context, String key) {
+        CompilerOptions options = context.generator.getOptions();
+
+        if (TemplateUtils.isImplicitIterator(key)) {
+            return options.isTrustedType(context.vars.getLast().descClass);
+        }
+
+        Member member = findLastMember(context, key);
+
+        if(member instanceof Method) {
+            Method method = (Method) member;
+            return method.isAnnotationPresent(Trusted.class) || options.isTrustedType(method.getReturnType());
+        } else if(member instanceof Field) {
+            Field field = (Field) member;
+            return field.isAnnotationPresent(Trusted.class) || options.isTrustedType(field.getType());
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds the member holding the value of a key, looking through the scopes from the innermost one
+     * @return The member or {@code null} if it wasn't found
+     */
+    private Member findLastMember(DataSourceContext context, String key) {
+        LinkedList<LocalVariable> vars = context.vars;
+
+        for(int i = vars.size() - 1; i >= 0; i--) {
+            Member[] members = resolver.findPath(vars.get(i).descClass, key);
+            if(members == null || members.length == 0) continue;
+
+            return members[members.length - 1];
+        }
+
+        return null;
+    }
+
     @Override
     public void insertBooleanGetter(DataSourceContext context, String key) throws CompilerException {
         Class<?> type = insertGetter(context, key, true).clazz;
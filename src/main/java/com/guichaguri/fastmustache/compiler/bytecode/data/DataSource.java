@@ -72,6 +72,50 @@ public interface DataSource {
      */
     void insertStringGetter(DataSourceContext context, String key, boolean escaped) throws CompilerException;
 
+    /**
+     * Loads into the stack the value of a key to be written.
+     *
+     * Unlike {@link #insertStringGetter(DataSourceContext, String, boolean)}, primitives, char sequences and boxed numbers
+     * can be kept as they are, so they are appended without creating a string first.
+     *
+     * @param context The context
+     * @param key The key
+     * @return The type loaded: a primitive, an enum, {@link BytecodeGenerator#STRING},
+     *         {@link BytecodeGenerator#CHAR_SEQUENCE} or {@link BytecodeGenerator#NUMBER}
+     */
+    default MemberType insertValueGetter(DataSourceContext context, String key) throws CompilerException {
+        insertStringGetter(context, key, false);
+        return new MemberType(String.class, BytecodeGenerator.STRING);
+    }
+
+    /**
+     * Checks whether the value of a key can be written without escaping in any context.
+     *
+     * That's only the case for types that can't contain anything to escape, such as numbers.
+     * They are still quoted in script code.
+     *
+     * @param context The context
+     * @param key The key
+     * @return Whether the escaping can be skipped
+     */
+    default boolean isEscapingSafe(DataSourceContext context, String key) {
+        return false;
+    }
+
+    /**
+     * Checks whether the value of a key can be written without HTML escaping.
+     *
+     * That's the case for members annotated with {@link com.guichaguri.fastmustache.template.Trusted}
+     * and trusted types. Other escapers, such as the ones for scripts and URLs, still escape them.
+     *
+     * @param context The context
+     * @param key The key
+     * @return Whether the HTML escaping can be skipped
+     */
+    default boolean isTrusted(DataSourceContext context, String key) {
+        return false;
+    }
+
     /**
      * Loads into the stack a primitive boolean
      * @param context The context
@@ -86,6 +130,18 @@ public interface DataSource {
      */
     void insertTypeGetter(DataSourceContext context, String key) throws CompilerException;
 
+    /**
+     * Whether the value types are only known in runtime, with the data items being {@link TemplateData}.
+     *
+     * Unknown sections then load the value once through {@link #insertObjectGetter(DataSourceContext, String)},
+     * converting it based on its runtime type instead of getting it again.
+     *
+     * @return Whether it's runtime typed
+     */
+    default boolean isRuntimeTyped() {
+        return false;
+    }
+
     /**
      * Loads into the stack a collection or an array
      * @param context The context
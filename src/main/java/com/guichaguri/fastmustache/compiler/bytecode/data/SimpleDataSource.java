@@ -112,6 +112,11 @@ public class SimpleDataSource implements DataSource {
                 Type.getMethodDescriptor(Type.INT_TYPE), false);
     }
 
+    @Override
+    public boolean isRuntimeTyped() {
+        return true;
+    }
+
     @Override
     public MemberType insertArrayGetter(DataSourceContext context, String key) {
         MethodVisitor mv = context.mv;
@@ -0,0 +1,420 @@
+package com.guichaguri.fastmustache.compiler.parser;
+
+import com.guichaguri.fastmustache.compiler.parser.tokens.PartialToken;
+import com.guichaguri.fastmustache.compiler.parser.tokens.VariableToken;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks where in the HTML document the raw text has ended, so each variable can be escaped for its context.
+ *
+ * It's a simplified HTML tokenizer that only knows about tags, attributes, comments and the script and style elements.
+ * The text is read in the template order, so the text inside sections is also assumed to be rendered.
+ *
+ * URLs that start with a variable have their scheme filtered, so a variable can't turn a link into {@code javascript:}.
+ * When the variable can be followed by the rest of the scheme, such as another variable or a colon,
+ * a value that isn't a safe scheme is also written as a relative path.
+ * Unquoted attribute values also have their whitespace encoded, unless they are event handlers or styles,
+ * which can't have variables in unquoted values at all.
+ * Inside scripts and event handler attributes, it also tracks the JavaScript strings, template literals and comments.
+ * Variables outside of a string literal are written as a quoted and escaped string, so they can't inject code.
+ * Regular expression literals are not recognized, so a quote inside of one is taken as the start of a string.
+ * Quotes encoded as character references in event handler attributes, such as {@code &quot;}, are not recognized either.
+ *
+ * Partials are parsed on their own, starting and ending in the HTML text,
+ * so they can only be included in the text, outside of any tag, comment, script or style.
+ */
+public class HtmlContext {
+
+    private enum State {
+        TEXT, TAG_OPEN, TAG_NAME, TAG, ATTR_NAME, AFTER_ATTR_NAME, BEFORE_VALUE,
+        VALUE_QUOTED, VALUE_UNQUOTED, DECLARATION, COMMENT, RAW_TEXT
+    }
+
+    private enum Script {
+        CODE, STRING, LINE_COMMENT, BLOCK_COMMENT
+    }
+
+    private static final Escaper SCRIPT_LITERAL = Escaper.JAVASCRIPT.quoted("\"");
+    private static final Escaper ATTRIBUTE_SCRIPT_LITERAL = Escaper.JAVASCRIPT.quoted("&quot;");
+
+    private State state = State.TEXT;
+
+    private final StringBuilder tagName = new StringBuilder();
+    private final StringBuilder attrName = new StringBuilder();
+    private boolean closingTag;
+    private char quote;
+    private boolean valueQuery; // Whether the URL value already has a query or fragment
+    private boolean valueScheme; // Whether the URL value can still be part of its scheme
+    private VariableToken schemeVariable; // The variable that can still be followed by the rest of the scheme
+    private int dashes;
+    private String rawTag;
+    private int rawMatch;
+
+    private Script script;
+    private char scriptQuote;
+    private boolean scriptEscape;
+    private char scriptPrevious;
+    private int scriptBraces;
+    private final Deque<Integer> scriptTemplates = new ArrayDeque<>(); // The braces of the code around each template literal
+
+    /**
+     * Reads the raw text that comes before the next variable
+     *
+     * @param text The raw text
+     */
+    public void append(String text) {
+        for(int i = 0; i < text.length(); i++) {
+            read(Character.toLowerCase(text.charAt(i)));
+        }
+    }
+
+    /**
+     * Reads a variable, choosing its escaper for the current context
+     *
+     * @param token The variable
+     * @param html The escaper used in the HTML body
+     * @throws ParseException Thrown when the variable can't be escaped in the current context
+     */
+    public void appendVariable(VariableToken token, Escaper html) throws ParseException {
+        boolean scheme = isUrlScheme();
+
+        if (scheme && schemeVariable != null) {
+            // The previous variable is followed by another one, which can complete its scheme
+            schemeVariable.escaper = Escaper.SAFE_URL_PREFIX;
+        }
+
+        if (token.escaped) {
+            token.escaper = getEscaper(token, html);
+        }
+
+        schemeVariable = scheme && token.escaped ? token : null;
+    }
+
+    /**
+     * Checks whether a partial can be included in the current context
+     *
+     * @param token The partial
+     * @throws ParseException Thrown when it's not in the HTML text
+     */
+    public void appendPartial(PartialToken token) throws ParseException {
+        if (!isText()) {
+            throw new ParseException("The partial " + token.partial + " can only be included in the HTML text",
+                    token.line, token.position);
+        }
+    }
+
+    /**
+     * Whether the context is in the HTML text, outside of any tag, comment, script or style
+     */
+    public boolean isText() {
+        return state == State.TEXT;
+    }
+
+    private Escaper getEscaper(VariableToken token, Escaper html) throws ParseException {
+        switch(state) {
+            case RAW_TEXT:
+                return rawTag.equals("script") ? getScriptEscaper(SCRIPT_LITERAL) : Escaper.CSS;
+            case VALUE_QUOTED:
+                return getAttributeEscaper(attrName.toString(), html);
+            case BEFORE_VALUE:
+            case VALUE_UNQUOTED:
+                return getUnquotedEscaper(token, attrName.toString(), html);
+            default:
+                return html;
+        }
+    }
+
+    private Escaper getUnquotedEscaper(VariableToken token, String name, Escaper html) throws ParseException {
+        Escaper escaper = getAttributeEscaper(name, html);
+
+        if (escaper == html) {
+            // Whitespace would end the value
+            return html.isEnabled() ? Escaper.HTML_UNQUOTED : html;
+        } else if (isUrlAttribute(name)) {
+            // URLs already have their whitespace percent-encoded
+            return escaper;
+        }
+
+        throw new ParseException("The variable " + token.variable + " can't be escaped in the unquoted " + name +
+                " attribute, quote its value", token.line, token.position);
+    }
+
+    private Escaper getAttributeEscaper(String name, Escaper html) {
+        if (name.startsWith("on")) {
+            return getScriptEscaper(ATTRIBUTE_SCRIPT_LITERAL);
+        } else if (name.equals("style")) {
+            return Escaper.CSS;
+        } else if (isUrlAttribute(name)) {
+            if (valueQuery) return Escaper.URL_COMPONENT;
+            return valueScheme ? Escaper.SAFE_URL : Escaper.URL;
+        }
+        return html;
+    }
+
+    private boolean isUrlScheme() {
+        boolean value = state == State.BEFORE_VALUE || state == State.VALUE_QUOTED || state == State.VALUE_UNQUOTED;
+        return value && valueScheme && !valueQuery && isUrlAttribute(attrName.toString());
+    }
+
+    private Escaper getScriptEscaper(Escaper literal) {
+        // Strings and comments are escaped as strings, the code has the value written as a string literal
+        return script == Script.CODE ? literal : Escaper.JAVASCRIPT;
+    }
+
+    private static boolean isUrlAttribute(String name) {
+        switch(name) {
+            case "href":
+            case "src":
+            case "action":
+            case "formaction":
+            case "cite":
+            case "poster":
+            case "background":
+            case "codebase":
+            case "longdesc":
+            case "manifest":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void read(char c) {
+        boolean whitespace = c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+
+        switch(state) {
+            case TEXT:
+                if (c == '<') {
+                    state = State.TAG_OPEN;
+                    tagName.setLength(0);
+                    closingTag = false;
+                }
+                break;
+            case TAG_OPEN:
+                if (c == '/' && !closingTag) {
+                    closingTag = true;
+                } else if (c == '!' && !closingTag) {
+                    state = State.DECLARATION;
+                    dashes = 0;
+                } else if (c >= 'a' && c <= 'z') {
+                    tagName.append(c);
+                    state = State.TAG_NAME;
+                } else {
+                    // Not a tag, such as "a < b"
+                    state = State.TEXT;
+                }
+                break;
+            case TAG_NAME:
+                if (whitespace || c == '/') {
+                    state = State.TAG;
+                } else if (c == '>') {
+                    endTag();
+                } else {
+                    tagName.append(c);
+                }
+                break;
+            case TAG:
+                if (c == '>') {
+                    endTag();
+                } else if (!whitespace && c != '/') {
+                    startAttribute(c);
+                }
+                break;
+            case ATTR_NAME:
+                if (whitespace) {
+                    state = State.AFTER_ATTR_NAME;
+                } else if (c == '=') {
+                    state = State.BEFORE_VALUE;
+                } else if (c == '>') {
+                    endTag();
+                } else if (c == '/') {
+                    state = State.TAG;
+                } else {
+                    attrName.append(c);
+                }
+                break;
+            case AFTER_ATTR_NAME:
+                if (c == '=') {
+                    state = State.BEFORE_VALUE;
+                } else if (c == '>') {
+                    endTag();
+                } else if (!whitespace) {
+                    startAttribute(c);
+                }
+                break;
+            case BEFORE_VALUE:
+                if (c == '"' || c == '\'') {
+                    state = State.VALUE_QUOTED;
+                    quote = c;
+                } else if (c == '>') {
+                    endTag();
+                } else if (!whitespace) {
+                    state = State.VALUE_UNQUOTED;
+                    readValue(c);
+                }
+                break;
+            case VALUE_QUOTED:
+                if (c == quote) {
+                    state = State.TAG;
+                } else {
+                    readValue(c);
+                }
+                break;
+            case VALUE_UNQUOTED:
+                if (whitespace) {
+                    state = State.TAG;
+                } else if (c == '>') {
+                    endTag();
+                } else {
+                    readValue(c);
+                }
+                break;
+            case DECLARATION:
+                // Either a comment or something like a doctype
+                if (c == '-' && ++dashes == 2) {
+                    state = State.COMMENT;
+                    dashes = 0;
+                } else if (c == '>') {
+                    state = State.TEXT;
+                } else if (c != '-') {
+                    dashes = 3;
+                }
+                break;
+            case COMMENT:
+                if (c == '>' && dashes >= 2) {
+                    state = State.TEXT;
+                } else {
+                    dashes = c == '-' ? dashes + 1 : 0;
+                }
+                break;
+            case RAW_TEXT:
+                // Looks for the closing tag
+                String closing = "</" + rawTag;
+
+                if (c == closing.charAt(rawMatch)) {
+                    if (++rawMatch == closing.length()) {
+                        state = State.TAG_NAME;
+                        closingTag = true;
+                    }
+                } else {
+                    rawMatch = c == '<' ? 1 : 0;
+                }
+
+                if (rawTag.equals("script")) readScript(c);
+                break;
+        }
+    }
+
+    private void startAttribute(char c) {
+        state = State.ATTR_NAME;
+        attrName.setLength(0);
+        attrName.append(c);
+        valueQuery = false;
+        valueScheme = true;
+        schemeVariable = null;
+        startScript();
+    }
+
+    private void readValue(char c) {
+        if (c == '?' || c == '#') valueQuery = true;
+
+        // Leading whitespace is ignored by browsers, the scheme ends at the colon
+        boolean whitespace = c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+        boolean schemeChar = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+        if (!whitespace && !schemeChar && valueScheme) {
+            if (c == ':' && schemeVariable != null) {
+                // The colon completes the scheme of the previous variable
+                schemeVariable.escaper = Escaper.SAFE_URL_PREFIX;
+            }
+
+            valueScheme = false;
+            schemeVariable = null;
+        }
+
+        if (attrName.indexOf("on") == 0) readScript(c);
+    }
+
+    private void startScript() {
+        script = Script.CODE;
+        scriptEscape = false;
+        scriptPrevious = 0;
+        scriptBraces = 0;
+        scriptTemplates.clear();
+    }
+
+    /**
+     * Reads a JavaScript character, keeping track of whether it's inside a string or a comment
+     *
+     * @param c The character
+     */
+    private void readScript(char c) {
+        switch(script) {
+            case CODE:
+                if (c == '"' || c == '\'' || c == '`') {
+                    script = Script.STRING;
+                    scriptQuote = c;
+                } else if (c == '/' && scriptPrevious == '/') {
+                    script = Script.LINE_COMMENT;
+                } else if (c == '*' && scriptPrevious == '/') {
+                    script = Script.BLOCK_COMMENT;
+                    c = 0; // So "/*/" doesn't close the comment
+                } else if (c == '{') {
+                    scriptBraces++;
+                } else if (c == '}' && scriptBraces > 0) {
+                    scriptBraces--;
+                } else if (c == '}' && !scriptTemplates.isEmpty()) {
+                    // Closes a template literal substitution
+                    script = Script.STRING;
+                    scriptQuote = '`';
+                    scriptBraces = scriptTemplates.pop();
+                }
+                break;
+            case STRING:
+                if (scriptEscape) {
+                    scriptEscape = false;
+                    c = 0; // So "\${" doesn't start a substitution
+                } else if (c == '\\') {
+                    scriptEscape = true;
+                } else if (c == scriptQuote) {
+                    script = Script.CODE;
+                    c = 0;
+                } else if (scriptQuote == '`' && c == '{' && scriptPrevious == '$') {
+                    // Opens a template literal substitution
+                    scriptTemplates.push(scriptBraces);
+                    scriptBraces = 0;
+                    script = Script.CODE;
+                } else if (scriptQuote != '`' && (c == '\n' || c == '\r')) {
+                    // Strings can't span multiple lines
+                    script = Script.CODE;
+                }
+                break;
+            case LINE_COMMENT:
+                if (c == '\n' || c == '\r') script = Script.CODE;
+                break;
+            case BLOCK_COMMENT:
+                if (c == '/' && scriptPrevious == '*') {
+                    script = Script.CODE;
+                    c = 0;
+                }
+                break;
+        }
+
+        scriptPrevious = c;
+    }
+
+    private void endTag() {
+        String name = tagName.toString();
+
+        if (!closingTag && (name.equals("script") || name.equals("style"))) {
+            state = State.RAW_TEXT;
+            rawTag = name;
+            rawMatch = 0;
+            startScript();
+        } else {
+            state = State.TEXT;
+        }
+    }
+
+}
@@ -23,6 +23,8 @@ public class MustacheParser {
     private int currentLineNumber = 0;
     private int currentPos;
 
+    private final HtmlContext htmlContext;
+
     private SectionToken currentSection;
     private ArrayList<MustacheToken> tokens = new ArrayList<>();
 
@@ -33,6 +35,7 @@ public class MustacheParser {
         this.delimiterRight = this.options.getDelimiterRight();
         this.defaultDelimiters = delimiterLeft.equals(CompilerOptions.DEFAULT.getDelimiterLeft()) &&
                 delimiterRight.equals(CompilerOptions.DEFAULT.getDelimiterRight());
+        this.htmlContext = options.isContextualEscapingEnabled() ? new HtmlContext() : null;
     }
 
     /**
@@ -106,6 +109,19 @@ public class MustacheParser {
         return tokens;
     }
 
+    /**
+     * Parses a partial, which has to end in the HTML text when the escaping is contextual
+     */
+    public List<MustacheToken> parsePartial() throws IOException, ParseException {
+        List<MustacheToken> tokens = parse();
+
+        if(htmlContext != null && !htmlContext.isText()) {
+            throw new ParseException("The partial has to end in the HTML text", currentLineNumber, currentPos);
+        }
+
+        return tokens;
+    }
+
     private void parseDelimiter(int start) throws IOException, ParseException {
         String tagContent;
         int d2 = currentLine.indexOf(delimiterRight, start);
@@ -253,6 +269,10 @@ public class MustacheParser {
     private void addText(String text) {
         if(text.isEmpty()) return;
 
+        if(htmlContext != null) {
+            htmlContext.append(text);
+        }
+
         TextToken token = new TextToken();
         token.line = currentLineNumber;
         token.position = currentPos;
@@ -287,6 +307,12 @@ public class MustacheParser {
         token.parent = currentSection;
         token.variable = variable;
         token.escaped = escaped;
+
+        if(htmlContext != null) {
+            // Picks the escaper based on where the variable is in the HTML document
+            htmlContext.appendVariable(token, options.getEscaper());
+        }
+
         addToken(token);
     }
 
@@ -300,6 +326,11 @@ public class MustacheParser {
         token.position = currentPos;
         token.parent = currentSection;
         token.partial = partial;
+
+        if(htmlContext != null) {
+            htmlContext.appendPartial(token);
+        }
+
         addToken(token);
     }
 
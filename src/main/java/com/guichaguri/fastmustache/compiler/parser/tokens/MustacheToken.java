@@ -2,9 +2,30 @@ package com.guichaguri.fastmustache.compiler.parser.tokens;
 
 import com.guichaguri.fastmustache.compiler.bytecode.BytecodeGenerator;
 import com.guichaguri.fastmustache.compiler.bytecode.CompilerException;
+import java.util.List;
 
 public abstract class MustacheToken {
 
+    /**
+     * Roughly estimates the bytecode size of a token list, including the section contents.
+     * It's used to split huge render methods.
+     * @param tokens The token list
+     * @return The estimated size in bytes
+     */
+    public static int getEstimatedSize(List<MustacheToken> tokens) {
+        int size = 0;
+
+        for(MustacheToken token : tokens) {
+            size += token.getEstimatedSize();
+
+            if (token instanceof SectionToken) {
+                size += getEstimatedSize(((SectionToken) token).content);
+            }
+        }
+
+        return size;
+    }
+
     public int line, position;
     public SectionToken parent;
 
@@ -15,4 +36,10 @@ public abstract class MustacheToken {
      */
     public abstract void add(BytecodeGenerator generator) throws CompilerException;
 
+    /**
+     * Roughly estimates the size of the bytecode generated by this token, not including its content
+     * @return The estimated size in bytes
+     */
+    public abstract int getEstimatedSize();
+
 }
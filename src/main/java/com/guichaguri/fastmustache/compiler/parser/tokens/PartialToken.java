@@ -16,6 +16,11 @@ public class PartialToken extends MustacheToken {
         generator.addPartial(partial);
     }
 
+    @Override
+    public int getEstimatedSize() {
+        return 16;
+    }
+
     @Override
     public String toString() {
         return "PartialToken{" +
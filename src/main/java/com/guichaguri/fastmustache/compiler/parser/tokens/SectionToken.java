@@ -19,6 +19,11 @@ public class SectionToken extends MustacheToken {
         generator.addSection(this);
     }
 
+    @Override
+    public int getEstimatedSize() {
+        return 48;
+    }
+
     @Override
     public String toString() {
         return "SectionToken{" +
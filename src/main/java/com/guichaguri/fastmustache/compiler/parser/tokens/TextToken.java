@@ -35,6 +35,11 @@ public class TextToken extends MustacheToken {
         generator.addText(text);
     }
 
+    @Override
+    public int getEstimatedSize() {
+        return 8;
+    }
+
     @Override
     public String toString() {
         return "TextToken{" +
@@ -3,6 +3,7 @@ package com.guichaguri.fastmustache.compiler.parser.tokens;
 import com.guichaguri.fastmustache.compiler.bytecode.CompilerException;
 import com.guichaguri.fastmustache.compiler.bytecode.BytecodeGenerator;
 import com.guichaguri.fastmustache.compiler.bytecode.data.DataSource;
+import com.guichaguri.fastmustache.escaper.Escaper;
 
 /**
  * Represents a variable
@@ -11,10 +12,20 @@ public class VariableToken extends MustacheToken {
 
     public String variable;
     public boolean escaped;
+    public Escaper escaper; // The escaper chosen for the variable context, null to use the default one
 
     @Override
     public void add(BytecodeGenerator generator) throws CompilerException {
-        generator.addVariable(variable, escaped);
+        if(escaped && escaper != null) {
+            generator.addVariable(variable, escaper);
+        } else {
+            generator.addVariable(variable, escaped);
+        }
+    }
+
+    @Override
+    public int getEstimatedSize() {
+        return 24;
     }
 
     @Override
@@ -22,6 +33,7 @@ public class VariableToken extends MustacheToken {
         return "VariableToken{" +
                 "variable='" + variable + '\'' +
                 ", escaped=" + escaped +
+                ", escaper=" + escaper +
                 '}';
     }
 }
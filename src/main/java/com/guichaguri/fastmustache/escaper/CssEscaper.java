@@ -0,0 +1,48 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes values inside CSS, such as in a style element or attribute.
+ *
+ * Every ASCII character other than letters, digits and a few harmless punctuation characters
+ * is replaced by its hexadecimal escape. Non-ASCII characters are kept as they are.
+ *
+ * @author Guichaguri
+ */
+public class CssEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.KEEP);
+
+    private static String[] createTable() {
+        String[] table = new String[0x80];
+
+        for(int c = 0; c < 0x80; c++) {
+            boolean safe = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                    c == ' ' || c == '-' || c == '_' || c == '.' || c == ',' || c == '#' || c == '%';
+
+            // The trailing space ends the escape, and is not part of the value
+            if (!safe) table[c] = "\\" + Integer.toHexString(c) + " ";
+        }
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
@@ -0,0 +1,135 @@
+package com.guichaguri.fastmustache.escaper;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of escaped strings, used by templates compiled with the escape cache enabled.
+ *
+ * It pays off when the same few strings are escaped over and over, such as labels and tags.
+ * Each string can only be in one slot, which is overwritten when another string needs it,
+ * so there is no eviction bookkeeping. Long strings are never cached.
+ *
+ * @author Guichaguri
+ */
+public class EscapeCache {
+
+    private static final ConcurrentMap<Class<?>, EscapeCache> SHARED = new ConcurrentHashMap<>();
+
+    /**
+     * The maximum length of a cached string
+     */
+    public static final int MAX_LENGTH = 256;
+
+    private final Entry[] entries;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Creates a cache
+     * @param size The amount of strings kept, rounded up to a power of two
+     */
+    public EscapeCache(int size) {
+        int length = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+
+        this.entries = new Entry[length];
+        this.mask = length - 1;
+    }
+
+    /**
+     * Gets the cache shared by the templates using an escaper, creating it if needed
+     * @param owner The class holding the escaping methods
+     * @param size The amount of strings kept when the cache is created
+     * @return The cache
+     */
+    public static EscapeCache getShared(Class<?> owner, int size) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        return SHARED.computeIfAbsent(owner, (o) -> new EscapeCache(size));
+    }
+
+    /**
+     * Gets the cache shared by the templates using an escaper
+     * @param escaper The escaper
+     * @return The cache or {@code null} if no template has used it yet
+     */
+    public static EscapeCache getShared(Escaper escaper) {
+        return escaper.isEnabled() ? SHARED.get(escaper.getOwner()) : null;
+    }
+
+    private int indexOf(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Gets the escaped version of a string
+     * @param str The original string
+     * @return The escaped string or {@code null} if it's not cached
+     */
+    public String get(String str) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        Entry entry = entries[indexOf(str.hashCode())];
+
+        if (entry != null && (entry.original == str || entry.original.equals(str))) {
+            hits.increment();
+            return entry.escaped;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Caches the escaped version of a string, replacing whichever string was in its slot
+     * @param str The original string
+     * @param escaped The escaped string
+     * @return The escaped string
+     */
+    public String put(String str, String escaped) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (str.length() <= MAX_LENGTH) {
+            entries[indexOf(str.hashCode())] = new Entry(str, escaped);
+        }
+        return escaped;
+    }
+
+    /**
+     * The amount of strings found in the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * The amount of strings that had to be escaped
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Resets the hit and miss counters
+     */
+    public void resetCounters() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * An immutable pair, so it can be shared between threads without locking
+     */
+    private static final class Entry {
+        final String original;
+        final String escaped;
+
+        Entry(String original, String escaped) {
+            this.original = original;
+            this.escaped = escaped;
+        }
+    }
+
+}
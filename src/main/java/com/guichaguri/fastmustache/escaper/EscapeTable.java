@@ -0,0 +1,216 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import com.guichaguri.fastmustache.template.TemplateUtils;
+import java.io.IOException;
+
+/**
+ * Escapes strings by replacing the characters found in a lookup table.
+ *
+ * It is shared by the built-in escapers, which only wrap it in static methods.
+ * The untouched runs between the replaced characters are appended in bulk, so nothing else is allocated.
+ *
+ * @author Guichaguri
+ */
+final class EscapeTable {
+
+    /**
+     * How the characters outside of the ASCII range are escaped
+     */
+    enum NonAscii {
+        /**
+         * Non-ASCII characters are kept as they are
+         */
+        KEEP,
+        /**
+         * U+2028 and U+2029 are escaped as JavaScript unicode escapes, as they end a JavaScript string
+         */
+        LINE_SEPARATORS,
+        /**
+         * Non-ASCII characters are escaped as HTML numeric character references
+         */
+        CHARACTER_REFERENCES
+    }
+
+    private final String[] replacements;
+    private final NonAscii nonAscii;
+
+    /**
+     * @param replacements The replacements of the ASCII characters, indexed by the character
+     * @param nonAscii How the non-ASCII characters are escaped
+     */
+    EscapeTable(String[] replacements, NonAscii nonAscii) {
+        this.replacements = replacements;
+        this.nonAscii = nonAscii;
+    }
+
+    String escapeString(String string) {
+        int index = indexOfEscape(string, 0);
+        if (index == -1) return string;
+
+        StringBuilder builder = new StringBuilder(string.length() + 16);
+        builder.append(string, 0, index);
+
+        return escapeInto(builder, string, index).toString();
+    }
+
+    StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        if (str == null) return builder.append("null");
+
+        int index = indexOfEscape(str, 0);
+
+        if (index == -1) {
+            // Nothing to escape
+            return builder.append(str);
+        }
+
+        builder.append(str, 0, index);
+        return escapeInto(builder, str, index);
+    }
+
+    private StringBuilder escapeInto(StringBuilder builder, CharSequence str, int index) {
+        int length = str.length();
+        int start = index;
+
+        while(index != -1) {
+            builder.append(str, start, index);
+
+            String replacement = getReplacement(str.charAt(index));
+
+            if (replacement != null) {
+                builder.append(replacement);
+            } else {
+                int codePoint = Character.codePointAt(str, index);
+                index += Character.charCount(codePoint) - 1;
+
+                builder.append("&#").append(getCharacterReference(codePoint)).append(';');
+            }
+
+            start = index + 1;
+            index = indexOfEscape(str, start);
+        }
+
+        return builder.append(str, start, length);
+    }
+
+    Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        if (str == null) return out.append("null");
+
+        int length = str.length();
+        int start = 0;
+        int index = indexOfEscape(str, 0);
+
+        while(index != -1) {
+            out.append(str, start, index);
+
+            String replacement = getReplacement(str.charAt(index));
+
+            if (replacement != null) {
+                out.append(replacement);
+            } else {
+                int codePoint = Character.codePointAt(str, index);
+                index += Character.charCount(codePoint) - 1;
+
+                out.append('&').append('#');
+                TemplateUtils.appendLong(out, getCharacterReference(codePoint));
+                out.append(';');
+            }
+
+            start = index + 1;
+            index = indexOfEscape(str, start);
+        }
+
+        return out.append(str, start, length);
+    }
+
+    ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        if (str == null) str = "null";
+
+        int length = str.length();
+        int start = 0;
+        int index = indexOfEscape(str, 0);
+
+        while(index != -1) {
+            out.append(str, start, index);
+
+            String replacement = getReplacement(str.charAt(index));
+
+            if (replacement != null) {
+                out.append(replacement);
+            } else {
+                int codePoint = Character.codePointAt(str, index);
+                index += Character.charCount(codePoint) - 1;
+
+                out.append((byte) '&').append((byte) '#');
+                TemplateUtils.appendLong(out, getCharacterReference(codePoint));
+                out.append((byte) ';');
+            }
+
+            start = index + 1;
+            index = indexOfEscape(str, start);
+        }
+
+        return out.append(str, start, length);
+    }
+
+    /**
+     * Finds the next character that needs to be escaped
+     *
+     * @param str The string
+     * @param start The index to start searching from
+     * @return The character index or {@code -1} if there is nothing else to escape
+     */
+    private int indexOfEscape(CharSequence str, int start) {
+        int length = str.length();
+
+        for(int i = start; i < length; i++) {
+            char c = str.charAt(i);
+
+            if (c < 0x80 ? replacements[c] != null : isEscaped(c)) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isEscaped(char c) {
+        switch(nonAscii) {
+            case CHARACTER_REFERENCES:
+                return true;
+            case LINE_SEPARATORS:
+                return c == '\u2028' || c == '\u2029';
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Gets the replacement of a character that needs to be escaped
+     *
+     * @param c The character
+     * @return The replacement or {@code null} if it should be escaped with its character reference
+     */
+    private String getReplacement(char c) {
+        if (c < 0x80) return replacements[c];
+        if (nonAscii == NonAscii.LINE_SEPARATORS) return c == '\u2028' ? "\\u2028" : "\\u2029";
+        return null;
+    }
+
+    /**
+     * Gets the number of the character reference for a code point.
+     *
+     * Surrogate pairs are referenced as a single code point, as the surrogates alone are not valid references.
+     * Unpaired surrogates are replaced by the replacement character.
+     *
+     * @param codePoint The code point
+     * @return The number to be referenced
+     */
+    private static int getCharacterReference(int codePoint) {
+        if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            return 0xFFFD;
+        }
+        return codePoint;
+    }
+
+}
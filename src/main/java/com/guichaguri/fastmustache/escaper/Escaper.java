@@ -0,0 +1,244 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Chooses how escaped variables are escaped.
+ *
+ * An escaper points to a public class with the static escaping methods below.
+ * They are invoked directly from the compiled templates, so there is no virtual dispatch involved.
+ * <ul>
+ *     <li>{@code String escapeString(String)}</li>
+ *     <li>{@code StringBuilder escapeInto(StringBuilder, CharSequence)}</li>
+ *     <li>{@code Appendable escapeInto(Appendable, CharSequence)}</li>
+ *     <li>{@code ByteOutput escapeInto(ByteOutput, CharSequence)}</li>
+ * </ul>
+ * The methods are looked up when the escaper is created, so their names and descriptors can't change.
+ * The built-in escapers only wrap a shared lookup table in these methods.
+ *
+ * @author Guichaguri
+ */
+public final class Escaper {
+
+    /**
+     * Escapes HTML, encoding the special characters and non-ASCII characters as entities
+     */
+    public static final Escaper HTML = new Escaper(HtmlEscaper.class, true);
+
+    /**
+     * Escapes HTML inside an unquoted attribute value, also encoding whitespace
+     */
+    public static final Escaper HTML_UNQUOTED = new Escaper(HtmlUnquotedEscaper.class);
+
+    /**
+     * Escapes HTML for UTF-8 outputs, keeping non-ASCII characters as they are
+     */
+    public static final Escaper HTML_UTF8 = new Escaper(HtmlUtf8Escaper.class, true);
+
+    /**
+     * Escapes XML attribute values, keeping non-ASCII characters as they are
+     */
+    public static final Escaper XML_ATTRIBUTE = new Escaper(XmlEscaper.class);
+
+    /**
+     * Escapes the contents of a JSON string
+     */
+    public static final Escaper JSON = new Escaper(JsonEscaper.class);
+
+    /**
+     * Escapes the contents of a JavaScript string, which is also safe inside a script tag
+     */
+    public static final Escaper JAVASCRIPT = new Escaper(JavaScriptEscaper.class);
+
+    /**
+     * Escapes values inside CSS
+     */
+    public static final Escaper CSS = new Escaper(CssEscaper.class);
+
+    /**
+     * Escapes a URL inside an HTML attribute, keeping its structure
+     */
+    public static final Escaper URL = new Escaper(UrlEscaper.class);
+
+    /**
+     * Escapes a URL inside an HTML attribute, replacing the URLs with a scheme other than http, https, mailto, ftp and tel
+     */
+    public static final Escaper SAFE_URL = new Escaper(SafeUrlEscaper.class);
+
+    /**
+     * Escapes the start of a URL inside an HTML attribute like {@link #SAFE_URL},
+     * for values followed by more of the URL that could complete their scheme
+     */
+    public static final Escaper SAFE_URL_PREFIX = new Escaper(SafeUrlPrefixEscaper.class);
+
+    /**
+     * Escapes a URL query or fragment component inside an HTML attribute
+     */
+    public static final Escaper URL_COMPONENT = new Escaper(UrlComponentEscaper.class);
+
+    /**
+     * Doesn't escape at all. Escaped variables are compiled just like unescaped ones.
+     */
+    public static final Escaper NONE = new Escaper();
+
+    private final Class<?> owner;
+    private final String quote;
+    private final boolean html;
+
+    private Escaper() {
+        this.owner = null;
+        this.quote = null;
+        this.html = false;
+    }
+
+    private Escaper(Class<?> owner, String quote, boolean html) {
+        this.owner = owner;
+        this.quote = quote;
+        this.html = html;
+    }
+
+    /**
+     * Creates an escaper from a class with the static escaping methods
+     *
+     * @param owner The class
+     * @throws IllegalArgumentException Thrown when the class is not public or is missing an escaping method
+     */
+    public Escaper(Class<?> owner) {
+        this(owner, false);
+    }
+
+    /**
+     * Creates an escaper from a class with the static escaping methods
+     *
+     * Values that are trusted, such as members annotated with {@link com.guichaguri.fastmustache.template.Trusted},
+     * are only written without escaping by HTML escapers.
+     * An HTML escaper must escape the HTML body and quoted attribute values, and nothing else.
+     *
+     * @param owner The class
+     * @param html Whether it escapes the HTML body and quoted attribute values
+     * @throws IllegalArgumentException Thrown when the class is not public or is missing an escaping method
+     */
+    public Escaper(Class<?> owner, boolean html) {
+        if (!Modifier.isPublic(owner.getModifiers())) {
+            throw new IllegalArgumentException(owner.getName() + " is not public");
+        }
+
+        checkMethod(owner, "escapeString", String.class, String.class);
+        checkMethod(owner, "escapeInto", StringBuilder.class, StringBuilder.class);
+        checkMethod(owner, "escapeInto", Appendable.class, Appendable.class);
+        checkMethod(owner, "escapeInto", ByteOutput.class, ByteOutput.class);
+
+        this.owner = owner;
+        this.quote = null;
+        this.html = html;
+    }
+
+    /**
+     * Creates an escaper that also writes the quotes around the escaped value, turning it into a string literal.
+     *
+     * It's meant for values that aren't inside a string literal in the template, such as {@code var a = {{a}};}
+     * Every value is quoted, including numbers, so a value can't be read as code.
+     *
+     * @param quote The quote written before and after the value
+     * @return The quoting escaper
+     */
+    public Escaper quoted(String quote) {
+        if (owner == null) throw new IllegalStateException("Only values that are escaped can be quoted");
+        return new Escaper(owner, quote, false);
+    }
+
+    /**
+     * Gets the escaper without the quotes
+     * @return The escaper that only escapes the value
+     */
+    public Escaper unquoted() {
+        return quote == null ? this : new Escaper(owner, null, html);
+    }
+
+    /**
+     * Gets the quote written around the escaped value
+     * @return The quote or {@code null} if the value is written without quotes
+     */
+    public String getQuote() {
+        return quote;
+    }
+
+    /**
+     * Gets the class holding the escaping methods
+     * @return The class or {@code null} if it doesn't escape
+     */
+    public Class<?> getOwner() {
+        return owner;
+    }
+
+    /**
+     * Whether it escapes the HTML body and quoted attribute values, where trusted values are written as they are
+     */
+    public boolean isHtml() {
+        return html;
+    }
+
+    /**
+     * Whether it escapes anything
+     */
+    public boolean isEnabled() {
+        return owner != null;
+    }
+
+    /**
+     * Escapes a string right away, such as constants that are known while compiling
+     *
+     * @param string The original string
+     * @return The escaped string
+     */
+    public String escape(String string) {
+        if (owner == null) return string;
+
+        try {
+            return (String) owner.getMethod("escapeString", String.class).invoke(null, string);
+        } catch(InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        } catch(ReflectiveOperationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Escaper{" + (owner == null ? "none" : owner.getName()) + (quote == null ? "" : ", quote=" + quote) + '}';
+    }
+
+    private static void checkMethod(Class<?> owner, String name, Class<?> returnType, Class<?> firstArg) {
+        Method method;
+
+        try {
+            if (firstArg == String.class) {
+                method = owner.getMethod(name, String.class);
+            } else {
+                method = owner.getMethod(name, firstArg, CharSequence.class);
+            }
+        } catch(NoSuchMethodException ex) {
+            throw new IllegalArgumentException(owner.getName() + " is missing the " + name + " method for " +
+                    firstArg.getSimpleName(), ex);
+        }
+
+        if (!Modifier.isStatic(method.getModifiers()) || method.getReturnType() != returnType) {
+            throw new IllegalArgumentException(method + " must be static and return " + returnType.getSimpleName());
+        }
+
+        // The IOException is only allowed when writing into an Appendable
+        for(Class<?> ex : method.getExceptionTypes()) {
+            if (ex == IOException.class && firstArg == Appendable.class) continue;
+            if (RuntimeException.class.isAssignableFrom(ex) || Error.class.isAssignableFrom(ex)) continue;
+
+            throw new IllegalArgumentException(method + " can't throw " + ex.getSimpleName());
+        }
+    }
+
+}
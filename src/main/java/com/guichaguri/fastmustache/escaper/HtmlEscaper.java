@@ -0,0 +1,52 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes HTML.
+ *
+ * The HTML special characters are replaced by entities, and non-ASCII characters are encoded
+ * as numeric character references, so the output is safe in any encoding.
+ *
+ * @author Guichaguri
+ */
+public class HtmlEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.CHARACTER_REFERENCES);
+
+    /**
+     * Creates the table of the named entities of the ASCII characters, indexed by the character.
+     *
+     * It doubles as the table of which characters need to be escaped, which is a lot cheaper
+     * than comparing each character against every one of them.
+     */
+    static String[] createTable() {
+        String[] table = new String[0x80];
+
+        table['<'] = "&lt;";
+        table['>'] = "&gt;";
+        table['&'] = "&amp;";
+        table['"'] = "&quot;";
+        table['\''] = "&#39;";
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
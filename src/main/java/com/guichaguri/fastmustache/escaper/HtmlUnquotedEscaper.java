@@ -0,0 +1,44 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes HTML inside an unquoted attribute value.
+ *
+ * On top of the HTML escaping, whitespace, the equals sign and the backtick are also encoded
+ * as numeric character references, as whitespace ends an unquoted value.
+ *
+ * @author Guichaguri
+ */
+public class HtmlUnquotedEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.CHARACTER_REFERENCES);
+
+    private static String[] createTable() {
+        String[] table = HtmlEscaper.createTable();
+
+        for(char c : " \t\n\f\r=`".toCharArray()) {
+            table[c] = "&#" + (int) c + ";";
+        }
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
@@ -0,0 +1,34 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes HTML for UTF-8 outputs.
+ *
+ * Only the HTML special characters are replaced by entities. Non-ASCII characters are kept as they are,
+ * instead of being encoded as character references.
+ *
+ * @author Guichaguri
+ */
+public class HtmlUtf8Escaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(HtmlEscaper.createTable(), EscapeTable.NonAscii.KEEP);
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes the contents of a JavaScript string.
+ *
+ * On top of the JSON escaping, both quotes and the HTML special characters are escaped as unicode escapes,
+ * so the string can't close the script tag, a single-quoted string or an event handler attribute.
+ * The backtick, the dollar sign and the slash are also escaped, so the string can't close or interpolate
+ * a template literal, nor close a comment.
+ *
+ * @author Guichaguri
+ */
+public class JavaScriptEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.LINE_SEPARATORS);
+
+    private static String[] createTable() {
+        String[] table = JsonEscaper.createTable();
+
+        table['"'] = "\\u0022";
+        table['\''] = "\\u0027";
+        table['<'] = "\\u003c";
+        table['>'] = "\\u003e";
+        table['&'] = "\\u0026";
+        table['`'] = "\\u0060";
+        table['$'] = "\\u0024";
+        table['/'] = "\\/";
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
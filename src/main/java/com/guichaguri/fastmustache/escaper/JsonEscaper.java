@@ -0,0 +1,53 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes the contents of a JSON string.
+ *
+ * Quotes, backslashes and control characters are escaped. U+2028 and U+2029 are escaped too,
+ * so the JSON can also be embedded in JavaScript.
+ *
+ * @author Guichaguri
+ */
+public class JsonEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.LINE_SEPARATORS);
+
+    static String[] createTable() {
+        String[] table = new String[0x80];
+
+        for(int c = 0; c < 0x20; c++) {
+            table[c] = String.format("\\u%04x", c);
+        }
+        table[0x7F] = "\\u007f";
+
+        table['\b'] = "\\b";
+        table['\f'] = "\\f";
+        table['\n'] = "\\n";
+        table['\r'] = "\\r";
+        table['\t'] = "\\t";
+        table['"'] = "\\\"";
+        table['\\'] = "\\\\";
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Escapes a URL inside an HTML attribute, just like {@link UrlEscaper}, but also filters its scheme.
+ *
+ * URLs with a scheme other than http, https, mailto, ftp and tel, such as {@code javascript:} and {@code data:},
+ * are replaced by {@link #INVALID_URL}. Relative URLs are kept.
+ * It's meant for values that start the URL, as only then the value can choose the scheme.
+ *
+ * @author Guichaguri
+ */
+public class SafeUrlEscaper {
+
+    /**
+     * The URL that replaces the URLs with an unsafe scheme
+     */
+    public static final String INVALID_URL = "about:invalid";
+
+    /**
+     * Replaces the URL when it has an unsafe scheme
+     *
+     * @param url The URL
+     * @param continued Whether the URL can be continued by what follows the value, completing its scheme
+     * @return The URL, {@link #INVALID_URL} or the URL as a relative path
+     */
+    static CharSequence filter(CharSequence url, boolean continued) {
+        if (url == null) return null;
+
+        int length = url.length();
+
+        for(int i = 0; i < length; i++) {
+            char c = url.charAt(i);
+
+            if (c == ':') {
+                // An empty scheme is not safe either, as it can complete a scheme that comes before the value
+                return isSafeScheme(url.subSequence(0, i)) ? url : INVALID_URL;
+            }
+
+            boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+            boolean schemeChar = (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.';
+
+            if (!letter && (i == 0 || !schemeChar)) {
+                // It's not a scheme, so the URL is relative
+                // Whitespace and control characters are percent-encoded, so they can't hide a scheme either
+                return url;
+            }
+        }
+
+        // The value only has scheme characters, so what follows it could still turn it into a scheme
+        if (!continued || length == 0 || isSafeScheme(url)) return url;
+        return "./" + url;
+    }
+
+    private static boolean isSafeScheme(CharSequence scheme) {
+        switch(scheme.toString().toLowerCase(Locale.ROOT)) {
+            case "http":
+            case "https":
+            case "mailto":
+            case "ftp":
+            case "tel":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static String escapeString(String string) {
+        return UrlEscaper.escapeString(filter(string, false).toString());
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return UrlEscaper.escapeInto(builder, filter(str, false));
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return UrlEscaper.escapeInto(out, filter(str, false));
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return UrlEscaper.escapeInto(out, filter(str, false));
+    }
+
+}
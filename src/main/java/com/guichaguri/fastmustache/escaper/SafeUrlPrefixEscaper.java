@@ -0,0 +1,33 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes the start of a URL inside an HTML attribute, when what follows could complete its scheme.
+ *
+ * It filters the scheme just like {@link SafeUrlEscaper}. A value that only has scheme characters and isn't
+ * a safe scheme itself, such as {@code javascript} followed by {@code :alert(1)}, is written as a relative path
+ * starting with {@code ./}, so it can't become a scheme.
+ *
+ * @author Guichaguri
+ */
+public class SafeUrlPrefixEscaper {
+
+    public static String escapeString(String string) {
+        return UrlEscaper.escapeString(SafeUrlEscaper.filter(string, true).toString());
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return UrlEscaper.escapeInto(builder, SafeUrlEscaper.filter(str, true));
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return UrlEscaper.escapeInto(out, SafeUrlEscaper.filter(str, true));
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return UrlEscaper.escapeInto(out, SafeUrlEscaper.filter(str, true));
+    }
+
+}
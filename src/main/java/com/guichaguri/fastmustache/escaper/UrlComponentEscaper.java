@@ -0,0 +1,47 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes a URL query or fragment component inside an HTML attribute.
+ *
+ * Every ASCII character other than the unreserved ones is percent-encoded,
+ * so the value can't change the URL structure. Non-ASCII characters are kept as they are, browsers encode them in UTF-8.
+ *
+ * @author Guichaguri
+ */
+public class UrlComponentEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.KEEP);
+
+    private static String[] createTable() {
+        String[] table = new String[0x80];
+
+        for(int c = 0; c < 0x80; c++) {
+            boolean unreserved = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+                    c == '-' || c == '_' || c == '.' || c == '~';
+
+            if (!unreserved) table[c] = UrlEscaper.percentEncode(c);
+        }
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
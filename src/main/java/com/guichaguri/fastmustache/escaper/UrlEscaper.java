@@ -0,0 +1,54 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes a URL inside an HTML attribute.
+ *
+ * The URL structure is kept, only the characters that are never valid in a URL are percent-encoded.
+ * The ampersand is encoded as an HTML entity, as the attribute value is HTML-decoded before being parsed as a URL.
+ * Non-ASCII characters are kept as they are, browsers encode them in UTF-8.
+ *
+ * @author Guichaguri
+ */
+public class UrlEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.KEEP);
+
+    private static String[] createTable() {
+        String[] table = new String[0x80];
+
+        for(int c = 0; c <= 0x20; c++) {
+            table[c] = percentEncode(c);
+        }
+        for(char c : "\"'<>\\^`{|}\u007f".toCharArray()) {
+            table[c] = percentEncode(c);
+        }
+
+        table['&'] = "&amp;";
+
+        return table;
+    }
+
+    static String percentEncode(int c) {
+        return (c < 0x10 ? "%0" : "%") + Integer.toHexString(c).toUpperCase();
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
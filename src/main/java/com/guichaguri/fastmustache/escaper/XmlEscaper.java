@@ -0,0 +1,49 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+
+/**
+ * Escapes XML attribute values.
+ *
+ * The markup characters are replaced by the predefined entities, and whitespace other than spaces
+ * is encoded so it survives the attribute value normalization. Non-ASCII characters are kept as they are.
+ *
+ * @author Guichaguri
+ */
+public class XmlEscaper {
+
+    private static final EscapeTable TABLE = new EscapeTable(createTable(), EscapeTable.NonAscii.KEEP);
+
+    private static String[] createTable() {
+        String[] table = new String[0x80];
+
+        table['<'] = "&lt;";
+        table['>'] = "&gt;";
+        table['&'] = "&amp;";
+        table['"'] = "&quot;";
+        table['\''] = "&apos;";
+        table['\t'] = "&#9;";
+        table['\n'] = "&#10;";
+        table['\r'] = "&#13;";
+
+        return table;
+    }
+
+    public static String escapeString(String string) {
+        return TABLE.escapeString(string);
+    }
+
+    public static StringBuilder escapeInto(StringBuilder builder, CharSequence str) {
+        return TABLE.escapeInto(builder, str);
+    }
+
+    public static Appendable escapeInto(Appendable out, CharSequence str) throws IOException {
+        return TABLE.escapeInto(out, str);
+    }
+
+    public static ByteOutput escapeInto(ByteOutput out, CharSequence str) {
+        return TABLE.escapeInto(out, str);
+    }
+
+}
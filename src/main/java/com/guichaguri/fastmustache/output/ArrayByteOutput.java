@@ -0,0 +1,130 @@
+package com.guichaguri.fastmustache.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteOutput} implementation using a growable byte array
+ *
+ * @author Guichaguri
+ */
+public class ArrayByteOutput extends ByteOutput {
+
+    private byte[] buffer;
+    private int count = 0;
+
+    public ArrayByteOutput() {
+        this(256);
+    }
+
+    public ArrayByteOutput(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(capacity, buffer.length << 1));
+        }
+    }
+
+    @Override
+    public ArrayByteOutput append(byte b) {
+        ensureCapacity(count + 1);
+        buffer[count++] = b;
+        return this;
+    }
+
+    @Override
+    public ArrayByteOutput append(byte[] bytes) {
+        ensureCapacity(count + bytes.length);
+        System.arraycopy(bytes, 0, buffer, count, bytes.length);
+        count += bytes.length;
+        return this;
+    }
+
+    @Override
+    public ArrayByteOutput append(CharSequence str) {
+        if (str == null) str = "null";
+
+        return append(str, 0, str.length());
+    }
+
+    @Override
+    public ArrayByteOutput append(CharSequence str, int start, int end) {
+        if (str == null) str = "null";
+
+        // Each char takes at most 3 bytes, a surrogate pair takes 4 bytes for 2 chars
+        ensureCapacity(count + (end - start) * 3);
+
+        byte[] buffer = this.buffer;
+        int count = this.count;
+
+        for(int i = start; i < end; i++) {
+            char c = str.charAt(i);
+
+            if (c < 0x80) {
+                buffer[count++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[count++] = (byte) (0xC0 | (c >> 6));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer[count++] = (byte) (0xE0 | (c >> 12));
+                buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                buffer[count++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                buffer[count++] = '?';
+            }
+        }
+
+        this.count = count;
+        return this;
+    }
+
+    /**
+     * Gets the amount of bytes written
+     * @return The size
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the internal buffer, which may be longer than the amount of bytes written
+     * @return The buffer
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Clears the output, keeping the allocated buffer
+     */
+    public void reset() {
+        count = 0;
+    }
+
+    /**
+     * Copies the bytes written into a new array
+     * @return The byte array
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    /**
+     * Writes the bytes into a stream
+     * @param stream The stream
+     * @throws IOException Thrown when an IO error occurs
+     */
+    public void writeTo(OutputStream stream) throws IOException {
+        stream.write(buffer, 0, count);
+    }
+
+}
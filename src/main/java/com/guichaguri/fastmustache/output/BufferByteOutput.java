@@ -0,0 +1,36 @@
+package com.guichaguri.fastmustache.output;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link ByteOutput} implementation that writes into a {@link ByteBuffer}.
+ *
+ * Just like {@link ByteBuffer#put(byte)}, it throws a {@link java.nio.BufferOverflowException} when the buffer is full.
+ *
+ * @author Guichaguri
+ */
+public class BufferByteOutput extends ByteOutput {
+
+    private final ByteBuffer buffer;
+
+    public BufferByteOutput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    @Override
+    public BufferByteOutput append(byte b) {
+        buffer.put(b);
+        return this;
+    }
+
+    @Override
+    public BufferByteOutput append(byte[] bytes) {
+        buffer.put(bytes);
+        return this;
+    }
+
+}
@@ -0,0 +1,158 @@
+package com.guichaguri.fastmustache.output;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteOutput} that writes into pages, usually direct {@link ByteBuffer}s, from a {@link PageAllocator}.
+ *
+ * After rendering, {@link #flip()} returns the filled pages, ready to be written with a
+ * {@link java.nio.channels.GatheringByteChannel}. The arena can be reused after {@link #reset()},
+ * which gives the pages back to the allocator.
+ *
+ * @author Guichaguri
+ */
+public class ByteBufferArena extends ByteOutput {
+
+    public static final int DEFAULT_PAGE_SIZE = 16 * 1024;
+
+    private final PageAllocator allocator;
+    private final int pageSize;
+
+    private ByteBuffer[] pages = new ByteBuffer[4];
+    private int count = 0;
+    private ByteBuffer page;
+    private boolean flipped = false;
+
+    public ByteBufferArena(PageAllocator allocator) {
+        this(allocator, DEFAULT_PAGE_SIZE);
+    }
+
+    public ByteBufferArena(PageAllocator allocator, int pageSize) {
+        this.allocator = allocator;
+        this.pageSize = Math.max(pageSize, 16);
+    }
+
+    private ByteBuffer nextPage() {
+        if (count == pages.length) {
+            pages = Arrays.copyOf(pages, count << 1);
+        }
+
+        page = allocator.allocate(pageSize);
+        pages[count++] = page;
+        return page;
+    }
+
+    @Override
+    public ByteBufferArena append(byte b) {
+        ByteBuffer page = this.page;
+        if (page == null || !page.hasRemaining()) page = nextPage();
+
+        page.put(b);
+        return this;
+    }
+
+    @Override
+    public ByteBufferArena append(byte[] bytes) {
+        ByteBuffer page = this.page;
+        int offset = 0;
+
+        while(offset < bytes.length) {
+            if (page == null || !page.hasRemaining()) page = nextPage();
+
+            int length = Math.min(page.remaining(), bytes.length - offset);
+            page.put(bytes, offset, length);
+            offset += length;
+        }
+
+        return this;
+    }
+
+    @Override
+    public ByteBufferArena append(CharSequence str) {
+        if (str == null) str = "null";
+
+        return append(str, 0, str.length());
+    }
+
+    @Override
+    public ByteBufferArena append(CharSequence str, int start, int end) {
+        if (str == null) str = "null";
+
+        ByteBuffer page = this.page;
+
+        for(int i = start; i < end; i++) {
+            // Makes sure the page fits the longest sequence, so a character is never split between pages
+            if (page == null || page.remaining() < 4) page = nextPage();
+
+            char c = str.charAt(i);
+
+            if (c < 0x80) {
+                page.put((byte) c);
+            } else if (c < 0x800) {
+                page.put((byte) (0xC0 | (c >> 6)));
+                page.put((byte) (0x80 | (c & 0x3F)));
+            } else if (!Character.isSurrogate(c)) {
+                page.put((byte) (0xE0 | (c >> 12)));
+                page.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                page.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                page.put((byte) (0xF0 | (codePoint >> 18)));
+                page.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                page.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                page.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                page.put((byte) '?');
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets the amount of bytes written
+     * @return The size
+     */
+    public long size() {
+        long size = 0;
+
+        for(int i = 0; i < count; i++) {
+            size += flipped ? pages[i].limit() : pages[i].position();
+        }
+
+        return size;
+    }
+
+    /**
+     * Flips the filled pages, so they can be read.
+     * Nothing else should be written until the arena is {@link #reset()}.
+     * @return The filled pages
+     */
+    public ByteBuffer[] flip() {
+        ByteBuffer[] filled = Arrays.copyOf(pages, count);
+
+        for(ByteBuffer page : filled) {
+            page.flip();
+        }
+
+        page = null;
+        flipped = true;
+        return filled;
+    }
+
+    /**
+     * Gives all pages back to the allocator, so the arena can be used again
+     */
+    public void reset() {
+        for(int i = 0; i < count; i++) {
+            allocator.release(pages[i]);
+            pages[i] = null;
+        }
+
+        count = 0;
+        page = null;
+        flipped = false;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.guichaguri.fastmustache.output;
+
+/**
+ * Represents an UTF-8 encoded output.
+ *
+ * Templates compiled with byte output enabled write the static text already encoded,
+ * while the variables are encoded straight into the output.
+ *
+ * @author Guichaguri
+ */
+public abstract class ByteOutput {
+
+    /**
+     * Appends a single byte
+     * @param b The byte
+     * @return The output itself
+     */
+    public abstract ByteOutput append(byte b);
+
+    /**
+     * Appends already encoded bytes
+     * @param bytes The encoded bytes
+     * @return The output itself
+     */
+    public abstract ByteOutput append(byte[] bytes);
+
+    /**
+     * Encodes and appends a character.
+     *
+     * Surrogates can't be encoded by themselves, so they are replaced with {@code ?}
+     *
+     * @param c The character
+     * @return The output itself
+     */
+    public ByteOutput append(char c) {
+        if (c < 0x80) {
+            append((byte) c);
+        } else if (c < 0x800) {
+            append((byte) (0xC0 | (c >> 6)));
+            append((byte) (0x80 | (c & 0x3F)));
+        } else if (Character.isSurrogate(c)) {
+            append((byte) '?');
+        } else {
+            append((byte) (0xE0 | (c >> 12)));
+            append((byte) (0x80 | ((c >> 6) & 0x3F)));
+            append((byte) (0x80 | (c & 0x3F)));
+        }
+        return this;
+    }
+
+    /**
+     * Encodes and appends a string.
+     *
+     * Unpaired surrogates are replaced with {@code ?}, and {@code null} is written as "null" like in an {@link Appendable}
+     *
+     * @param str The string
+     * @return The output itself
+     */
+    public ByteOutput append(CharSequence str) {
+        if (str == null) str = "null";
+
+        return append(str, 0, str.length());
+    }
+
+    /**
+     * Encodes and appends a part of a string.
+     *
+     * Unpaired surrogates are replaced with {@code ?}
+     *
+     * @param str The string
+     * @param start The index of the first character
+     * @param end The index after the last character
+     * @return The output itself
+     */
+    public ByteOutput append(CharSequence str, int start, int end) {
+        if (str == null) str = "null";
+
+        for(int i = start; i < end; i++) {
+            char c = str.charAt(i);
+
+            if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                append((byte) (0xF0 | (codePoint >> 18)));
+                append((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                append((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                append((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                append(c);
+            }
+        }
+
+        return this;
+    }
+
+}
@@ -0,0 +1,265 @@
+package com.guichaguri.fastmustache.output;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * An output made of a linked list of fixed-size chunks.
+ *
+ * Unlike a {@link StringBuilder}, it never copies what was already written to grow,
+ * and never allocates a single huge array, which would be a humongous allocation in G1.
+ * Long strings, such as the template raw text, are linked by reference instead of being copied.
+ *
+ * @author Guichaguri
+ */
+public final class ChunkedOutput implements Appendable, CharSequence {
+
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /**
+     * Strings at least this long are referenced instead of copied
+     */
+    private static final int REFERENCE_THRESHOLD = 128;
+
+    private final int chunkSize;
+
+    private Node head, tail;
+    private char[] chunk;
+    private int chunkPos;
+    private int length = 0;
+
+    // The last node found by an index, so sequential reads don't walk the list from the head every time
+    private Node cursor;
+    private int cursorStart;
+
+    public ChunkedOutput() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    public ChunkedOutput(int chunkSize) {
+        this.chunkSize = Math.max(chunkSize, REFERENCE_THRESHOLD);
+    }
+
+    private void link(Node node) {
+        if (tail == null) {
+            head = tail = node;
+        } else {
+            tail.next = node;
+            tail = node;
+        }
+    }
+
+    /**
+     * Gets the free space in the current chunk, allocating a new one when it is full
+     * @return The amount of chars that can be written
+     */
+    private int prepareChunk() {
+        if (chunk == null || chunkPos == chunk.length) {
+            chunk = new char[chunkSize];
+            chunkPos = 0;
+        }
+
+        // Continues the last node when it is the one being filled, otherwise starts a new one in the same chunk
+        if (tail == null || tail.chars != chunk || tail.offset + tail.length != chunkPos) {
+            link(new Node(chunk, chunkPos, null));
+        }
+
+        return chunk.length - chunkPos;
+    }
+
+    private void written(int count) {
+        chunkPos += count;
+        tail.length += count;
+        length += count;
+    }
+
+    @Override
+    public ChunkedOutput append(char c) {
+        prepareChunk();
+        chunk[chunkPos] = c;
+        written(1);
+        return this;
+    }
+
+    /**
+     * Appends a string, referencing it instead of copying when it's long enough
+     * @param str The string
+     * @return The output itself
+     */
+    public ChunkedOutput append(String str) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (str == null) str = "null";
+
+        int strLength = str.length();
+
+        if (strLength >= REFERENCE_THRESHOLD) {
+            // Strings are immutable, so it's safe to keep the reference
+            Node node = new Node(null, 0, str);
+            node.length = strLength;
+            link(node);
+            length += strLength;
+            return this;
+        }
+
+        int pos = 0;
+
+        while(pos < strLength) {
+            int count = Math.min(prepareChunk(), strLength - pos);
+            str.getChars(pos, pos + count, chunk, chunkPos);
+            written(count);
+            pos += count;
+        }
+
+        return this;
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq) {
+        if (csq instanceof String || csq == null) {
+            return append((String) csq);
+        }
+
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public ChunkedOutput append(CharSequence csq, int start, int end) {
+        if (csq == null) csq = "null";
+
+        // Mutable sequences must always be copied
+        while(start < end) {
+            int count = Math.min(prepareChunk(), end - start);
+
+            for(int i = 0; i < count; i++) {
+                chunk[chunkPos + i] = csq.charAt(start + i);
+            }
+
+            written(count);
+            start += count;
+        }
+
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+
+        seek(index);
+        return cursor.charAt(index - cursorStart);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+
+        char[] chars = new char[end - start];
+        if (start == end) return new String(chars);
+
+        seek(start);
+
+        Node node = cursor;
+        int pos = start - cursorStart;
+        int destPos = 0;
+
+        // Copies the part of each node within the range
+        while(destPos < chars.length) {
+            int count = Math.min(node.length - pos, chars.length - destPos);
+            node.getChars(pos, pos + count, chars, destPos);
+
+            destPos += count;
+            node = node.next;
+            pos = 0;
+        }
+
+        return new String(chars);
+    }
+
+    /**
+     * Moves the cursor into the node containing the index.
+     *
+     * Only the last node grows, so the start of the nodes before it never changes.
+     * @param index The index
+     */
+    private void seek(int index) {
+        if (cursor == null || index < cursorStart) {
+            cursor = head;
+            cursorStart = 0;
+        }
+
+        while(index >= cursorStart + cursor.length) {
+            cursorStart += cursor.length;
+            cursor = cursor.next;
+        }
+    }
+
+    /**
+     * Writes all chunks into a writer, without joining them
+     * @param writer The writer
+     * @throws IOException Thrown when an IO error occurs
+     */
+    public void writeTo(Writer writer) throws IOException {
+        for(Node node = head; node != null; node = node.next) {
+            if (node.text != null) {
+                writer.write(node.text);
+            } else {
+                writer.write(node.chars, node.offset, node.length);
+            }
+        }
+    }
+
+    /**
+     * Joins all chunks into a string.
+     * Prefer {@link #writeTo(Writer)} for big outputs.
+     * @return The string
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        int pos = 0;
+
+        for(Node node = head; node != null; node = node.next) {
+            node.getChars(0, node.length, chars, pos);
+            pos += node.length;
+        }
+
+        return new String(chars);
+    }
+
+    private static final class Node {
+        private final char[] chars;
+        private final int offset;
+        private final String text;
+        private int length = 0;
+        private Node next;
+
+        private Node(char[] chars, int offset, String text) {
+            this.chars = chars;
+            this.offset = offset;
+            this.text = text;
+        }
+
+        private char charAt(int index) {
+            return text != null ? text.charAt(index) : chars[offset + index];
+        }
+
+        private void getChars(int start, int end, char[] dest, int destPos) {
+            if (text != null) {
+                text.getChars(start, end, dest, destPos);
+            } else {
+                System.arraycopy(chars, offset + start, dest, destPos, end - start);
+            }
+        }
+    }
+
+}
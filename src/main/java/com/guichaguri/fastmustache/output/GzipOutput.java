@@ -0,0 +1,214 @@
+package com.guichaguri.fastmustache.output;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * A {@link ByteOutput} that writes a gzip stream.
+ *
+ * The raw text of templates compiled with {@link com.guichaguri.fastmustache.template.CompilerOptions#isGzipOutputEnabled()}
+ * is deflated only once, as independent byte-aligned blocks. Those blocks are copied into the stream as they are,
+ * so only the variables are compressed while rendering.
+ *
+ * IO errors are thrown as {@link UncheckedIOException}s.
+ *
+ * @author Guichaguri
+ */
+public class GzipOutput extends ByteOutput {
+
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    /**
+     * The amount of bytes kept before compressing them
+     */
+    private static final int PENDING_LIMIT = 8192;
+
+    /**
+     * The maximum amount of bytes from a pre-deflated block used as dictionary for the next variables
+     */
+    private static final int DICTIONARY_LENGTH = 1024;
+
+    private final OutputStream stream;
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final ArrayByteOutput pending = new ArrayByteOutput(1024);
+    private final byte[] buffer = new byte[4096];
+
+    private long size = 0;
+    private boolean flushed = true;
+
+    public GzipOutput(OutputStream stream) throws IOException {
+        this(stream, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public GzipOutput(OutputStream stream, int level) throws IOException {
+        this.stream = stream;
+        this.deflater = new Deflater(level, true);
+
+        stream.write(HEADER);
+    }
+
+    /**
+     * Deflates a block, ending it on a byte boundary so it can be placed anywhere in a deflate stream
+     * @param bytes The uncompressed bytes
+     * @return The deflated block
+     */
+    public static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 16);
+        byte[] buffer = new byte[4096];
+
+        try {
+            deflater.setInput(bytes);
+
+            int length;
+            do {
+                length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+                out.write(buffer, 0, length);
+            } while(length == buffer.length);
+        } finally {
+            deflater.end();
+        }
+
+        return out.toByteArray();
+    }
+
+    private void deflate(int flush) throws IOException {
+        int length;
+        do {
+            length = deflater.deflate(buffer, 0, buffer.length, flush);
+            stream.write(buffer, 0, length);
+        } while(length == buffer.length || !deflater.needsInput());
+    }
+
+    /**
+     * Compresses the pending bytes
+     * @param flush The deflater flush mode
+     */
+    private void compressPending(int flush) throws IOException {
+        int length = pending.size();
+
+        if (length > 0) {
+            byte[] bytes = pending.getBuffer();
+            crc.update(bytes, 0, length);
+            size += length;
+
+            deflater.setInput(bytes, 0, length);
+            pending.reset();
+        }
+
+        deflate(flush);
+        flushed = flush != Deflater.NO_FLUSH;
+    }
+
+    private void checkPending() {
+        if (pending.size() < PENDING_LIMIT) return;
+
+        try {
+            compressPending(Deflater.NO_FLUSH);
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public GzipOutput append(byte b) {
+        pending.append(b);
+        checkPending();
+        return this;
+    }
+
+    @Override
+    public GzipOutput append(byte[] bytes) {
+        pending.append(bytes);
+        checkPending();
+        return this;
+    }
+
+    @Override
+    public GzipOutput append(CharSequence str) {
+        pending.append(str);
+        checkPending();
+        return this;
+    }
+
+    @Override
+    public GzipOutput append(CharSequence str, int start, int end) {
+        pending.append(str, start, end);
+        checkPending();
+        return this;
+    }
+
+    /**
+     * Appends a block deflated by {@link #deflate(byte[])}
+     * @param bytes The uncompressed bytes
+     * @param deflated The deflated block
+     * @return The output itself
+     */
+    public GzipOutput appendDeflated(byte[] bytes, byte[] deflated) {
+        try {
+            // Ends the current block on a byte boundary
+            if (!flushed || pending.size() > 0) compressPending(Deflater.SYNC_FLUSH);
+
+            stream.write(deflated);
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        crc.update(bytes, 0, bytes.length);
+        size += bytes.length;
+
+        // The deflater can't refer back to what it hasn't seen, so it restarts from the block contents
+        int dictionary = Math.min(bytes.length, DICTIONARY_LENGTH);
+        deflater.reset();
+        deflater.setDictionary(bytes, bytes.length - dictionary, dictionary);
+
+        return this;
+    }
+
+    /**
+     * Gets the amount of uncompressed bytes written
+     * @return The size
+     */
+    public long size() {
+        return size + pending.size();
+    }
+
+    /**
+     * Compresses the remaining bytes and writes the gzip trailer.
+     * The stream is not closed.
+     * @throws IOException Thrown when an IO error occurs
+     */
+    public void finish() throws IOException {
+        int length = pending.size();
+        crc.update(pending.getBuffer(), 0, length);
+        size += length;
+
+        deflater.setInput(pending.getBuffer(), 0, length);
+        deflater.finish();
+        pending.reset();
+
+        while(!deflater.finished()) {
+            stream.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+        int crc = (int) this.crc.getValue();
+        int size = (int) this.size;
+        stream.write(new byte[]{
+                (byte) crc, (byte) (crc >> 8), (byte) (crc >> 16), (byte) (crc >> 24),
+                (byte) size, (byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24)
+        });
+    }
+
+    /**
+     * Releases the deflater
+     */
+    public void end() {
+        deflater.end();
+    }
+
+}
@@ -0,0 +1,33 @@
+package com.guichaguri.fastmustache.output;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the pages used by a {@link ByteBufferArena}
+ *
+ * @author Guichaguri
+ */
+@FunctionalInterface
+public interface PageAllocator {
+
+    /**
+     * Allocates direct pages without reusing them
+     */
+    PageAllocator DIRECT = ByteBuffer::allocateDirect;
+
+    /**
+     * Allocates an empty page
+     * @param size The page size
+     * @return The page
+     */
+    ByteBuffer allocate(int size);
+
+    /**
+     * Gives a page back once it is no longer used
+     * @param page The page
+     */
+    default void release(ByteBuffer page) {
+
+    }
+
+}
@@ -0,0 +1,149 @@
+package com.guichaguri.fastmustache.output;
+
+import java.util.Arrays;
+
+/**
+ * Collects the rendered strings by reference, keeping track of the total length.
+ *
+ * The pieces are only copied once, when the output is joined into a string of the exact size.
+ * Used by templates compiled with exact sizing enabled.
+ *
+ * @author Guichaguri
+ */
+public final class PieceBuilder implements Appendable, CharSequence {
+
+    private static final String[] ASCII = new String[0x80];
+
+    static {
+        for(char c = 0; c < ASCII.length; c++) {
+            ASCII[c] = String.valueOf(c);
+        }
+    }
+
+    private String[] pieces;
+    private int[] starts;
+    private int[] ends;
+    private int count = 0;
+    private int length = 0;
+
+    public PieceBuilder() {
+        this(16);
+    }
+
+    public PieceBuilder(int capacity) {
+        capacity = Math.max(capacity, 4);
+        this.pieces = new String[capacity];
+        this.starts = new int[capacity];
+        this.ends = new int[capacity];
+    }
+
+    @Override
+    public PieceBuilder append(CharSequence csq) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        // Strings are immutable, so they are kept by reference. Anything else has to be copied now
+        String piece = String.valueOf(csq);
+        return add(piece, 0, piece.length());
+    }
+
+    @Override
+    public PieceBuilder append(CharSequence csq, int start, int end) {
+        if (csq instanceof String) {
+            // Keeps the bounds instead of creating a substring
+            return add((String) csq, start, end);
+        }
+
+        return append(csq == null ? "null".subSequence(start, end) : csq.subSequence(start, end));
+    }
+
+    @Override
+    public PieceBuilder append(char c) {
+        return append(c < ASCII.length ? ASCII[c] : String.valueOf(c));
+    }
+
+    private PieceBuilder add(String piece, int start, int end) {
+        if (start < 0 || start > end || end > piece.length()) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + piece.length());
+        }
+        if (start == end) return this;
+
+        if (count == pieces.length) {
+            // Only the references are copied here, never the text itself
+            pieces = Arrays.copyOf(pieces, count << 1);
+            starts = Arrays.copyOf(starts, count << 1);
+            ends = Arrays.copyOf(ends, count << 1);
+        }
+
+        pieces[count] = piece;
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+        length += end - start;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+
+        for(int i = 0; i < count; i++) {
+            int pieceLength = ends[i] - starts[i];
+            if (index < pieceLength) return pieces[i].charAt(starts[i] + index);
+            index -= pieceLength;
+        }
+
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+
+        char[] chars = new char[end - start];
+        getChars(start, end, chars);
+        return new String(chars);
+    }
+
+    /**
+     * Joins all pieces into a string, copying them only once into an array of the exact length
+     * @return The string
+     */
+    @Override
+    public String toString() {
+        char[] chars = new char[length];
+        getChars(0, length, chars);
+        return new String(chars);
+    }
+
+    /**
+     * Copies a range of the pieces into an array
+     */
+    private void getChars(int start, int end, char[] dest) {
+        int offset = 0;
+
+        for(int i = 0; i < count && offset < end; i++) {
+            int pieceStart = starts[i];
+            int pieceEnd = ends[i];
+            int nextOffset = offset + pieceEnd - pieceStart;
+
+            if (nextOffset > start) {
+                // Only the part of the piece within the range is copied
+                int from = pieceStart + Math.max(start - offset, 0);
+                int to = pieceEnd - Math.max(nextOffset - end, 0);
+                pieces[i].getChars(from, to, dest, Math.max(offset - start, 0));
+            }
+
+            offset = nextOffset;
+        }
+    }
+
+}
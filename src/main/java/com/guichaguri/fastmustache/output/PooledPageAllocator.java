@@ -0,0 +1,67 @@
+package com.guichaguri.fastmustache.output;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A {@link PageAllocator} that keeps a bounded amount of direct pages to be reused.
+ *
+ * Just like the {@link StringBuilderPool}, it doesn't rely on thread locals nor locks.
+ *
+ * @author Guichaguri
+ */
+public class PooledPageAllocator implements PageAllocator {
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<ByteBuffer> slots;
+
+    /**
+     * Creates a pool
+     * @param size The maximum amount of pages kept
+     */
+    public PooledPageAllocator(int size) {
+        this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+    }
+
+    private int probeStart(int length) {
+        // Spreads the threads across the slots to reduce contention
+        return (int) ((Thread.currentThread().getId() & Integer.MAX_VALUE) % length);
+    }
+
+    @Override
+    public ByteBuffer allocate(int size) {
+        int length = slots.length();
+        int index = probeStart(length);
+        int probes = Math.min(length, MAX_PROBES);
+
+        for(int i = 0; i < probes; i++) {
+            ByteBuffer page = slots.get(index);
+
+            if (page != null && page.capacity() == size && slots.compareAndSet(index, page, null)) {
+                page.clear();
+                return page;
+            }
+
+            if (++index == length) index = 0;
+        }
+
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    @Override
+    public void release(ByteBuffer page) {
+        int length = slots.length();
+        int index = probeStart(length);
+        int probes = Math.min(length, MAX_PROBES);
+
+        for(int i = 0; i < probes; i++) {
+            if (slots.get(index) == null && slots.compareAndSet(index, null, page)) {
+                return;
+            }
+
+            if (++index == length) index = 0;
+        }
+    }
+
+}
@@ -0,0 +1,133 @@
+package com.guichaguri.fastmustache.output;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteOutput} made of a list of segments, ready to be written with a
+ * {@link java.nio.channels.GatheringByteChannel}.
+ *
+ * Shared segments, such as the pre-encoded raw text of a template, are referenced instead of copied,
+ * so only the variables are written into a buffer.
+ *
+ * The segments are only valid until the output is {@link #reset()}.
+ *
+ * @author Guichaguri
+ */
+public class SegmentOutput extends ByteOutput {
+
+    private final ArrayByteOutput dynamic;
+
+    private ByteBuffer[] segments = new ByteBuffer[16];
+    private int count = 0;
+    private int mark = 0;
+    private long sharedSize = 0;
+
+    public SegmentOutput() {
+        this(256);
+    }
+
+    public SegmentOutput(int capacity) {
+        this.dynamic = new ArrayByteOutput(capacity);
+    }
+
+    /**
+     * Creates a read-only segment that can be shared between outputs
+     * @param bytes The segment contents
+     * @return The segment
+     */
+    public static ByteBuffer createSegment(byte[] bytes) {
+        ByteBuffer segment = ByteBuffer.allocateDirect(bytes.length);
+        segment.put(bytes);
+        segment.flip();
+        return segment.asReadOnlyBuffer();
+    }
+
+    private void add(ByteBuffer segment) {
+        if (count == segments.length) {
+            segments = Arrays.copyOf(segments, count << 1);
+        }
+
+        segments[count++] = segment;
+    }
+
+    /**
+     * Closes the bytes written since the last segment into a new segment
+     */
+    private void flushDynamic() {
+        int size = dynamic.size();
+
+        if (size > mark) {
+            // Even if the buffer grows later on, the old array still holds these bytes
+            add(ByteBuffer.wrap(dynamic.getBuffer(), mark, size - mark));
+            mark = size;
+        }
+    }
+
+    @Override
+    public SegmentOutput append(byte b) {
+        dynamic.append(b);
+        return this;
+    }
+
+    @Override
+    public SegmentOutput append(byte[] bytes) {
+        dynamic.append(bytes);
+        return this;
+    }
+
+    @Override
+    public SegmentOutput append(CharSequence str) {
+        dynamic.append(str);
+        return this;
+    }
+
+    @Override
+    public SegmentOutput append(CharSequence str, int start, int end) {
+        dynamic.append(str, start, end);
+        return this;
+    }
+
+    /**
+     * Appends a shared segment without copying it
+     * @param segment The segment, which will not be modified
+     * @return This output
+     */
+    public SegmentOutput appendSegment(ByteBuffer segment) {
+        flushDynamic();
+
+        // Writing the segment changes its position, so each output needs its own view
+        add(segment.duplicate());
+        sharedSize += segment.remaining();
+        return this;
+    }
+
+    /**
+     * Gets the amount of bytes written
+     * @return The size
+     */
+    public long size() {
+        return sharedSize + dynamic.size();
+    }
+
+    /**
+     * Gets the segments written so far
+     * @return The segments
+     */
+    public ByteBuffer[] toSegments() {
+        flushDynamic();
+        return Arrays.copyOf(segments, count);
+    }
+
+    /**
+     * Clears the output, keeping the allocated buffer
+     */
+    public void reset() {
+        Arrays.fill(segments, 0, count, null);
+        dynamic.reset();
+        count = 0;
+        mark = 0;
+        sharedSize = 0;
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.guichaguri.fastmustache.output;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of {@link StringBuilder}s used by templates compiled with the builder pool enabled.
+ *
+ * It doesn't rely on thread locals nor locks, so it's safe to use from virtual threads.
+ * Builders are only kept when there's a free slot and they're not bigger than the maximum capacity.
+ *
+ * @author Guichaguri
+ */
+public class StringBuilderPool {
+
+    /**
+     * The pool used by the compiled templates
+     */
+    public static final StringBuilderPool DEFAULT = new StringBuilderPool(
+            Runtime.getRuntime().availableProcessors() * 4, 256 * 1024);
+
+    private static final int MAX_PROBES = 8;
+
+    private final AtomicReferenceArray<StringBuilder> slots;
+    private final int maxCapacity;
+
+    /**
+     * Creates a pool
+     * @param size The maximum amount of builders kept
+     * @param maxCapacity The maximum capacity of a builder kept
+     */
+    public StringBuilderPool(int size, int maxCapacity) {
+        this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+        this.maxCapacity = maxCapacity;
+    }
+
+    private int probeStart(int length) {
+        // Spreads the threads across the slots to reduce contention
+        return (int) ((Thread.currentThread().getId() & Integer.MAX_VALUE) % length);
+    }
+
+    /**
+     * Takes an empty builder from the pool, or creates a new one when there is none available
+     * @param capacity The minimum capacity
+     * @return The builder
+     */
+    public StringBuilder acquire(int capacity) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        int length = slots.length();
+        int index = probeStart(length);
+        int probes = Math.min(length, MAX_PROBES);
+
+        for(int i = 0; i < probes; i++) {
+            StringBuilder builder = slots.get(index);
+
+            if (builder != null && slots.compareAndSet(index, builder, null)) {
+                builder.ensureCapacity(capacity);
+                return builder;
+            }
+
+            if (++index == length) index = 0;
+        }
+
+        return new StringBuilder(capacity);
+    }
+
+    /**
+     * Gives a builder back to the pool.
+     * The builder must not be used after it is released.
+     * @param builder The builder
+     */
+    public void release(StringBuilder builder) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (builder.capacity() > maxCapacity) return;
+
+        builder.setLength(0);
+
+        int length = slots.length();
+        int index = probeStart(length);
+        int probes = Math.min(length, MAX_PROBES);
+
+        for(int i = 0; i < probes; i++) {
+            if (slots.get(index) == null && slots.compareAndSet(index, null, builder)) {
+                return;
+            }
+
+            if (++index == length) index = 0;
+        }
+    }
+
+}
@@ -1,15 +1,31 @@
 package com.guichaguri.fastmustache.template;
 
+import com.guichaguri.fastmustache.escaper.Escaper;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
 /**
  * @author Guichaguri
  */
 public class CompilerOptions {
 
+    private static final Set<Class<?>> SAFE_TYPES = new HashSet<>(Arrays.asList( // Types that are never escaped
+            int.class, long.class, short.class, byte.class, float.class, double.class, boolean.class,
+            Integer.class, Long.class, Short.class, Byte.class, Float.class, Double.class, Boolean.class,
+            BigInteger.class, UUID.class));
+
     public static final CompilerOptions DEFAULT = new CompilerOptions();
 
     private String delimiterLeft = "{{";
     private String delimiterRight = "}}";
     private boolean escapingEnabled = true;
+    private Escaper escaper = Escaper.HTML; // How escaped variables will be escaped
+    private boolean contextualEscapingEnabled = false; // Whether it will choose the escaper based on the HTML context
+    private int escapeCacheSize = 0; // The amount of escaped strings kept in the EscapeCache, 0 disables it
+    private final Set<Class<?>> trustedTypes = new HashSet<>(); // Types that are not HTML escaped
 
     private PartialResolver resolver;
     private boolean variableNullChecksEnabled = false; // Whether it will null check variables before
@@ -17,6 +33,15 @@ public class CompilerOptions {
     private boolean arrayNullChecksEnabled = false;
     private boolean partialNullChecksEnabled = false;
     private boolean explodeDataSectionProperties = false; // Whether it will explode data objects in non-null sections
+    private boolean byteOutputEnabled = false; // Whether it will generate an UTF-8 render method with pre-encoded text
+    private boolean builderPoolEnabled = false; // Whether it will reuse builders from the StringBuilderPool
+    private boolean adaptiveCapacityEnabled = false; // Whether it will presize the builder based on the previous outputs
+    private boolean exactSizingEnabled = false; // Whether it will size the output exactly before copying it
+    private boolean chunkedOutputEnabled = false; // Whether it will generate a render method for the ChunkedOutput
+    private boolean segmentOutputEnabled = false; // Whether it will generate a render method sharing the raw text as segments
+    private boolean gzipOutputEnabled = false; // Whether it will generate a gzip render method with the raw text pre-deflated
+    private int classVersion = 52; // The class file version of the compiled templates, 52 being Java 8
+    private int methodSizeLimit = 8000; // The estimated bytecode size at which render methods are split, 0 disables it
 
     public String getDelimiterLeft() {
         return delimiterLeft;
@@ -34,6 +59,62 @@ public class CompilerOptions {
         return escapingEnabled;
     }
 
+    public Escaper getEscaper() {
+        return escaper;
+    }
+
+    public void setEscaper(Escaper escaper) {
+        this.escaper = escaper;
+    }
+
+    public boolean isContextualEscapingEnabled() {
+        return contextualEscapingEnabled;
+    }
+
+    public void setContextualEscapingEnabled(boolean contextualEscapingEnabled) {
+        this.contextualEscapingEnabled = contextualEscapingEnabled;
+    }
+
+    public int getEscapeCacheSize() {
+        return escapeCacheSize;
+    }
+
+    public void setEscapeCacheSize(int escapeCacheSize) {
+        this.escapeCacheSize = escapeCacheSize;
+    }
+
+    /**
+     * Registers a type whose values are written without HTML escaping, such as a wrapper of sanitized HTML.
+     *
+     * Trusted values are only written as they are by HTML escapers. Other escapers, such as the ones chosen
+     * for scripts, styles and URLs by the contextual escaping, still escape them.
+     *
+     * @param type The type, which also trusts its subclasses
+     */
+    public void addTrustedType(Class<?> type) {
+        trustedTypes.add(type);
+    }
+
+    public boolean isTrustedType(Class<?> type) {
+        if (isSafeType(type)) return true;
+
+        for(Class<?> trusted : trustedTypes) {
+            if(trusted.isAssignableFrom(type)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the values of a type can't contain anything to escape, which is the case of
+     * numbers, booleans and {@link UUID}s. They are written without escaping with any escaper.
+     *
+     * @param type The type
+     * @return Whether it's safe
+     */
+    public boolean isSafeType(Class<?> type) {
+        return SAFE_TYPES.contains(type);
+    }
+
     public boolean isVariableNullChecksEnabled() {
         return variableNullChecksEnabled;
     }
@@ -78,6 +159,10 @@ public class CompilerOptions {
         this.delimiterRight = delimiterRight;
     }
 
+    public void setResolver(PartialResolver resolver) {
+        this.resolver = resolver;
+    }
+
     public boolean isExplodeDataSectionProperties() {
         return explodeDataSectionProperties;
     }
@@ -85,4 +170,105 @@ public class CompilerOptions {
     public void setExplodeDataSectionProperties(boolean explodeDataSectionProperties) {
         this.explodeDataSectionProperties = explodeDataSectionProperties;
     }
+
+    public boolean isByteOutputEnabled() {
+        return byteOutputEnabled;
+    }
+
+    public void setByteOutputEnabled(boolean byteOutputEnabled) {
+        this.byteOutputEnabled = byteOutputEnabled;
+    }
+
+    public boolean isBuilderPoolEnabled() {
+        return builderPoolEnabled;
+    }
+
+    public void setBuilderPoolEnabled(boolean builderPoolEnabled) {
+        this.builderPoolEnabled = builderPoolEnabled;
+    }
+
+    public boolean isAdaptiveCapacityEnabled() {
+        return adaptiveCapacityEnabled;
+    }
+
+    /**
+     * Sets whether render(T) presizes its builder based on the length of the previous outputs.
+     *
+     * The compiled template keeps the estimate in a plain int field, which is updated after every render.
+     * It's neither volatile nor synchronized, as a lost or stale update from another thread
+     * only makes the next builder a bit bigger or smaller than needed.
+     *
+     * @param adaptiveCapacityEnabled Whether the capacity is adapted, disabled by default
+     */
+    public void setAdaptiveCapacityEnabled(boolean adaptiveCapacityEnabled) {
+        this.adaptiveCapacityEnabled = adaptiveCapacityEnabled;
+    }
+
+    public boolean isExactSizingEnabled() {
+        return exactSizingEnabled;
+    }
+
+    public void setExactSizingEnabled(boolean exactSizingEnabled) {
+        this.exactSizingEnabled = exactSizingEnabled;
+    }
+
+    public boolean isChunkedOutputEnabled() {
+        return chunkedOutputEnabled;
+    }
+
+    public void setChunkedOutputEnabled(boolean chunkedOutputEnabled) {
+        this.chunkedOutputEnabled = chunkedOutputEnabled;
+    }
+
+    public boolean isSegmentOutputEnabled() {
+        return segmentOutputEnabled;
+    }
+
+    public void setSegmentOutputEnabled(boolean segmentOutputEnabled) {
+        this.segmentOutputEnabled = segmentOutputEnabled;
+    }
+
+    public boolean isGzipOutputEnabled() {
+        return gzipOutputEnabled;
+    }
+
+    public void setGzipOutputEnabled(boolean gzipOutputEnabled) {
+        this.gzipOutputEnabled = gzipOutputEnabled;
+    }
+
+    public int getClassVersion() {
+        return classVersion;
+    }
+
+    /**
+     * Sets the class file version of the compiled templates.
+     *
+     * Version 53 (Java 9) and newer render templates made only of text and variables
+     * with a single invokedynamic string concatenation.
+     * The concatenation is skipped when the builder pool, the adaptive capacity or the exact sizing is enabled.
+     * The templates can't be loaded by a JVM older than the version.
+     *
+     * @param classVersion The class file major version, such as 52 for Java 8 or 53 for Java 9
+     */
+    public void setClassVersion(int classVersion) {
+        this.classVersion = classVersion;
+    }
+
+    public int getMethodSizeLimit() {
+        return methodSizeLimit;
+    }
+
+    /**
+     * Sets the estimated bytecode size at which the render methods are split.
+     *
+     * Once a method reaches it, the tokens that come after are moved into private methods.
+     * The static initializer, which sets up the encoded text constants, is split the same way.
+     * The default is right below the size HotSpot refuses to JIT-compile, and it also prevents the 64KB method limit.
+     *
+     * @param methodSizeLimit The size in bytes or 0 to never split the render methods.
+     *                        The static initializer is still split before it gets close to the 64KB limit.
+     */
+    public void setMethodSizeLimit(int methodSizeLimit) {
+        this.methodSizeLimit = methodSizeLimit;
+    }
 }
@@ -1,5 +1,16 @@
 package com.guichaguri.fastmustache.template;
 
+import com.guichaguri.fastmustache.output.ArrayByteOutput;
+import com.guichaguri.fastmustache.output.BufferByteOutput;
+import com.guichaguri.fastmustache.output.ByteOutput;
+import com.guichaguri.fastmustache.output.ChunkedOutput;
+import com.guichaguri.fastmustache.output.GzipOutput;
+import com.guichaguri.fastmustache.output.SegmentOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
 /**
  * A template built from any {@link T object}
  *
@@ -14,4 +25,152 @@ public interface Template<T> {
      */
     String render(T data);
 
+    /**
+     * Renders the template into a {@link StringBuilder}.
+     *
+     * Compiled templates render directly into the builder, which allows partials to share the same builder.
+     *
+     * @param builder The builder
+     * @param data The data object
+     */
+    default void render(StringBuilder builder, T data) {
+        builder.append(render(data));
+    }
+
+    /**
+     * Renders the template straight into an output, such as a {@link java.io.Writer}.
+     *
+     * Compiled templates write directly into the output, without building an intermediate string.
+     *
+     * @param data The data object
+     * @param out The output
+     * @throws IOException Thrown when the output couldn't be written
+     */
+    default void render(T data, Appendable out) throws IOException {
+        out.append(render(data));
+    }
+
+    /**
+     * Renders the template into a {@link ChunkedOutput}.
+     *
+     * Templates compiled with {@link CompilerOptions#isChunkedOutputEnabled()} invoke the output directly,
+     * passing the raw text as references instead of copying it.
+     *
+     * @param data The data object
+     * @param out The output
+     */
+    default void render(T data, ChunkedOutput out) {
+        try {
+            render(data, (Appendable) out);
+        } catch(IOException ex) {
+            // ChunkedOutput never throws IO exceptions
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Renders the template into a new {@link ChunkedOutput}, which can then be written into a {@link java.io.Writer}.
+     *
+     * Recommended for big outputs, as it never needs to resize or allocate a huge buffer.
+     *
+     * @param data The data object
+     * @return The rendered template
+     */
+    default ChunkedOutput renderChunked(T data) {
+        ChunkedOutput out = new ChunkedOutput();
+        render(data, out);
+        return out;
+    }
+
+    /**
+     * Renders the template into an UTF-8 encoded output.
+     *
+     * Templates compiled with {@link CompilerOptions#isByteOutputEnabled()} write the static text pre-encoded
+     * and encode the variables straight into the output.
+     *
+     * @param data The data object
+     * @param out The output
+     */
+    default void render(T data, ByteOutput out) {
+        out.append(render(data));
+    }
+
+    /**
+     * Renders the template into a {@link SegmentOutput}.
+     *
+     * Templates compiled with {@link CompilerOptions#isSegmentOutputEnabled()} append the raw text
+     * as shared segments instead of copying it.
+     *
+     * @param data The data object
+     * @param out The output
+     */
+    default void render(T data, SegmentOutput out) {
+        render(data, (ByteOutput) out);
+    }
+
+    /**
+     * Renders the template into a new {@link SegmentOutput},
+     * which can then be written with a {@link java.nio.channels.GatheringByteChannel}
+     * @param data The data object
+     * @return The rendered template
+     */
+    default SegmentOutput renderSegments(T data) {
+        SegmentOutput out = new SegmentOutput();
+        render(data, out);
+        return out;
+    }
+
+    /**
+     * Renders the template into an UTF-8 encoded {@link ByteBuffer}
+     * @param data The data object
+     * @param buffer The buffer
+     * @throws java.nio.BufferOverflowException Thrown when the buffer is not big enough
+     */
+    default void render(T data, ByteBuffer buffer) {
+        render(data, new BufferByteOutput(buffer));
+    }
+
+    /**
+     * Renders the template into an UTF-8 encoded byte array
+     * @param data The data object
+     * @return The rendered template
+     */
+    default byte[] renderBytes(T data) {
+        ArrayByteOutput out = new ArrayByteOutput();
+        render(data, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Renders the template into a {@link GzipOutput}.
+     *
+     * Templates compiled with {@link CompilerOptions#isGzipOutputEnabled()} write the raw text pre-deflated,
+     * compressing only the variables.
+     *
+     * @param data The data object
+     * @param out The output
+     */
+    default void render(T data, GzipOutput out) {
+        render(data, (ByteOutput) out);
+    }
+
+    /**
+     * Renders the template as a gzip stream. The stream is not closed.
+     * @param data The data object
+     * @param stream The stream
+     * @throws IOException Thrown when the stream couldn't be written
+     */
+    default void renderGzip(T data, OutputStream stream) throws IOException {
+        GzipOutput out = new GzipOutput(stream);
+
+        try {
+            render(data, out);
+            out.finish();
+        } catch(UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            out.end();
+        }
+    }
+
 }
@@ -1,8 +1,5 @@
 package com.guichaguri.fastmustache.template;
 
-import java.lang.reflect.Array;
-import java.util.Collection;
-
 /**
  * Represents a data adapter class for the "simple" and "typed" compilation types.
  *
@@ -53,15 +50,7 @@ public interface TemplateData {
      * @return The boolean value
      */
     default boolean getBoolean(String key) {
-        Object o = get(key);
-
-        if(o == null) {
-            return false;
-        } else if(o instanceof Boolean) {
-            return (Boolean) o;
-        } else {
-            return true;
-        }
+        return TemplateUtils.toBoolean(get(key));
     }
 
     /**
@@ -73,39 +62,7 @@ public interface TemplateData {
      * @return The array
      */
     default TemplateData[] getArray(String key) {
-        Object o = get(key);
-
-        if (o instanceof TemplateData[]) {
-
-            return (TemplateData[]) o;
-
-        } else if (o.getClass().isArray()) {
-
-            int length = Array.getLength(o);
-            TemplateData[] data = new TemplateData[length];
-
-            for(int i = 0; i < length; i++) {
-                data[i] = TemplateUtils.fromObject(Array.get(o, i));
-            }
-
-            return data;
-
-        } else if (o instanceof Collection) {
-
-            Collection<?> collection = (Collection<?>) o;
-            int length = collection.size();
-            TemplateData[] data = new TemplateData[length];
-            int i = 0;
-
-            for(Object obj : collection) {
-                data[i++] = TemplateUtils.fromObject(obj);
-            }
-
-            return data;
-
-        }
-
-        return null;
+        return TemplateUtils.toDataArray(get(key));
     }
 
     /**
@@ -3,6 +3,10 @@ package com.guichaguri.fastmustache.template;
 import com.guichaguri.fastmustache.data.ImplicitData;
 import com.guichaguri.fastmustache.data.MapData;
 import com.guichaguri.fastmustache.data.ObjectData;
+import com.guichaguri.fastmustache.escaper.HtmlEscaper;
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.IOException;
+import java.lang.reflect.Array;
 import java.util.Collection;
 import java.util.Map;
 
@@ -14,33 +18,142 @@ public class TemplateUtils {
     /**
      * Simple way to escape a string.
      *
+     * Returns the same string when there's nothing to escape.
+     *
      * @param string The original string
      * @return The escaped string
+     * @see HtmlEscaper
      */
     public static String escapeString(String string) {
         // Note: This method is invoked in compiled templates
         // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
-        StringBuilder builder = new StringBuilder();
-
-        for(char c : string.toCharArray()) {
-            if(c == '<') {
-                builder.append("&lt;");
-            } else if(c == '>') {
-                builder.append("&gt;");
-            } else if(c == '&') {
-                builder.append("&amp;");
-            } else if(c == '"') {
-                builder.append("&quot;");
-            } else if(c == '\'') {
-                builder.append("&#39;");
-            } else if(c >= 0x80) {
-                builder.append("&#").append((int)c).append(';');
-            } else {
-                builder.append(c);
-            }
+        return HtmlEscaper.escapeString(string);
+    }
+
+    /**
+     * Appends a boxed number into a builder, without converting it into a string first
+     *
+     * @param builder The builder
+     * @param number The number
+     * @return The builder itself
+     */
+    public static StringBuilder appendNumber(StringBuilder builder, Number number) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            return builder.append(number.intValue());
+        } else if (number instanceof Long) {
+            return builder.append(number.longValue());
+        } else if (number instanceof Double) {
+            return builder.append(number.doubleValue());
+        } else if (number instanceof Float) {
+            return builder.append(number.floatValue());
         }
+        return builder.append(number);
+    }
 
-        return builder.toString();
+    /**
+     * Appends a boxed number into an output, without converting integers into a string first
+     *
+     * @param out The output
+     * @param number The number
+     * @return The output itself
+     * @throws IOException Thrown when the output couldn't be written
+     */
+    public static Appendable appendNumber(Appendable out, Number number) throws IOException {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            return appendLong(out, number.longValue());
+        }
+        return out.append(String.valueOf(number));
+    }
+
+    /**
+     * Appends a boxed number into an UTF-8 encoded output, without converting integers into a string first
+     *
+     * @param out The output
+     * @param number The number
+     * @return The output itself
+     */
+    public static ByteOutput appendNumber(ByteOutput out, Number number) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte) {
+            return appendLong(out, number.longValue());
+        }
+        return out.append(String.valueOf(number));
+    }
+
+    /**
+     * Appends an integer into an output, digit by digit
+     *
+     * @param out The output
+     * @param value The integer
+     * @return The output itself
+     * @throws IOException Thrown when the output couldn't be written
+     */
+    public static Appendable appendLong(Appendable out, long value) throws IOException {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (value < 0) {
+            // The minimum value can't be negated
+            if (value == Long.MIN_VALUE) return out.append("-9223372036854775808");
+
+            out.append('-');
+            value = -value;
+        }
+
+        appendDecimal(out, value);
+        return out;
+    }
+
+    /**
+     * Appends an integer into an UTF-8 encoded output, digit by digit
+     *
+     * @param out The output
+     * @param value The integer
+     * @return The output itself
+     */
+    public static ByteOutput appendLong(ByteOutput out, long value) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (value < 0) {
+            // The minimum value can't be negated
+            if (value == Long.MIN_VALUE) return out.append("-9223372036854775808");
+
+            out.append((byte) '-');
+            value = -value;
+        }
+
+        appendDecimal(out, value);
+        return out;
+    }
+
+    private static void appendDecimal(Appendable out, long value) throws IOException {
+        if (value >= 10) appendDecimal(out, value / 10);
+        out.append((char) ('0' + value % 10));
+    }
+
+    private static void appendDecimal(ByteOutput out, long value) {
+        if (value >= 10) appendDecimal(out, value / 10);
+        out.append((byte) ('0' + value % 10));
+    }
+
+    /**
+     * Calculates the next capacity estimate for a template, based on a decaying maximum of the rendered lengths.
+     *
+     * It grows right away to fit bigger outputs, but only shrinks slowly, so a few small outputs
+     * don't make the next big one resize the builder again.
+     *
+     * @param capacity The current capacity estimate
+     * @param length The length of the last rendered output
+     * @return The new capacity estimate
+     */
+    public static int nextCapacity(int capacity, int length) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        return Math.max(length, capacity - (capacity >> 3));
     }
 
     public static boolean isImplicitIterator(String key) {
@@ -54,6 +167,8 @@ public class TemplateUtils {
      * @return The template data
      */
     public static TemplateData fromObject(Object o) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
         if(o == null) {
             return null;
         } else if(o instanceof TemplateData) {
@@ -70,4 +185,64 @@ public class TemplateUtils {
         }
     }
 
+    /**
+     * Converts a value into a section condition
+     *
+     * @param o The value
+     * @return {@code false} if it's {@code null} or false, {@code true} otherwise
+     */
+    public static boolean toBoolean(Object o) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if(o == null) {
+            return false;
+        } else if(o instanceof Boolean) {
+            return (Boolean) o;
+        } else {
+            return true;
+        }
+    }
+
+    /**
+     * Converts an array or a collection into a {@link TemplateData} array
+     *
+     * @param o The array or collection
+     * @return The template data array or {@code null} if it's not an array nor a collection
+     */
+    public static TemplateData[] toDataArray(Object o) {
+        // Note: This method is invoked in compiled templates
+        // Don't change the method name or descriptor without also changing it in the invoke bytecode instructions
+        if (o instanceof TemplateData[]) {
+
+            return (TemplateData[]) o;
+
+        } else if (o != null && o.getClass().isArray()) {
+
+            int length = Array.getLength(o);
+            TemplateData[] data = new TemplateData[length];
+
+            for(int i = 0; i < length; i++) {
+                data[i] = fromObject(Array.get(o, i));
+            }
+
+            return data;
+
+        } else if (o instanceof Collection) {
+
+            Collection<?> collection = (Collection<?>) o;
+            int length = collection.size();
+            TemplateData[] data = new TemplateData[length];
+            int i = 0;
+
+            for(Object obj : collection) {
+                data[i++] = fromObject(obj);
+            }
+
+            return data;
+
+        }
+
+        return null;
+    }
+
 }
@@ -0,0 +1,20 @@
+package com.guichaguri.fastmustache.template;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a field or a getter whose value is already safe HTML.
+ *
+ * Its value skips the HTML escaping of the text and quoted attributes.
+ * Inside scripts, URLs and styles, or with escapers that aren't for HTML, it's still escaped.
+ *
+ * @author Guichaguri
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface Trusted {
+
+}
@@ -0,0 +1,62 @@
+package com.guichaguri.fastmustache;
+
+import com.guichaguri.fastmustache.data.MapData;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import com.guichaguri.fastmustache.template.Template;
+import com.guichaguri.fastmustache.template.TemplateData;
+import java.util.Collections;
+import org.junit.Test;
+
+import static com.guichaguri.fastmustache.TemplateAssert.assertRenders;
+
+/**
+ * Compiles templates that are too large for a single method, so the bytecode has to be split
+ */
+public class LargeTemplateTest {
+
+    private static void assertLines(int lines, CompilerOptions options) throws Exception {
+        StringBuilder template = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+
+        // Every line is a distinct text constant
+        for(int i = 0; i < lines; i++) {
+            template.append("line ").append(i).append(" {{v}}\n");
+            expected.append("line ").append(i).append(" &lt;\n");
+        }
+
+        Template<TemplateData> compiled = new FastMustache(template.toString()).withOptions(options).compileSimple();
+        assertRenders(expected.toString(), compiled, new MapData(Collections.singletonMap("v", "<")));
+    }
+
+    @Test
+    public void testByteOutput() throws Exception {
+        CompilerOptions options = new CompilerOptions();
+        options.setByteOutputEnabled(true);
+
+        assertLines(6000, options);
+    }
+
+    @Test
+    public void testEncodedOutputs() throws Exception {
+        CompilerOptions options = new CompilerOptions();
+        options.setByteOutputEnabled(true);
+        options.setSegmentOutputEnabled(true);
+        options.setGzipOutputEnabled(true);
+        options.setEscapeCacheSize(64);
+
+        assertLines(3000, options);
+    }
+
+    @Test
+    public void testWithoutSizeLimit() throws Exception {
+        CompilerOptions options = new CompilerOptions();
+        options.setByteOutputEnabled(true);
+        options.setSegmentOutputEnabled(true);
+        options.setGzipOutputEnabled(true);
+        options.setMethodSizeLimit(0);
+
+        // The render methods aren't split, but the static initializer still is
+        assertLines(2000, options);
+    }
+
+}
@@ -0,0 +1,371 @@
+package com.guichaguri.fastmustache;
+
+import com.guichaguri.fastmustache.data.MapData;
+import com.guichaguri.fastmustache.data.ObjectData;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import com.guichaguri.fastmustache.template.MustacheLambda;
+import com.guichaguri.fastmustache.template.MustacheType;
+import com.guichaguri.fastmustache.template.Template;
+import com.guichaguri.fastmustache.template.TemplateData;
+import com.guichaguri.fastmustache.template.Trusted;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+import static com.guichaguri.fastmustache.TemplateAssert.assertRenders;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Renders the same templates compiled with each output mode, checking every render method gives the same output
+ */
+@RunWith(Parameterized.class)
+public class OutputModesTest {
+
+    private static final String TEMPLATE = "Hi {{name}} {{{name}}} {{age}}{{#admin}} admin{{/admin}}{{^admin}} user{{/admin}}|" +
+            "{{#items}}[{{name}}:{{qty}}]{{/items}}|{{#arr}}({{name}}){{/arr}}|{{#best}}<{{name}}>{{/best}}|{{#bold}}B{{name}}{{/bold}}";
+
+    private static final String EXPECTED = "Hi Rick &lt;&amp;&gt; Rick <&> 42 admin|[a:1][b&#233;:2]|(x)|<best>|<b>BRick &lt;&amp;&gt;</b>";
+
+    @Parameters(name = "{0}")
+    public static Collection<Object[]> modes() {
+        List<Object[]> modes = new ArrayList<>();
+        modes.add(mode("default", o -> {}));
+        modes.add(mode("builder pool", o -> o.setBuilderPoolEnabled(true)));
+        modes.add(mode("adaptive capacity", o -> o.setAdaptiveCapacityEnabled(true)));
+        modes.add(mode("exact sizing", o -> o.setExactSizingEnabled(true)));
+        modes.add(mode("chunked output", o -> o.setChunkedOutputEnabled(true)));
+        modes.add(mode("segment output", o -> o.setSegmentOutputEnabled(true)));
+        modes.add(mode("gzip output", o -> o.setGzipOutputEnabled(true)));
+        modes.add(mode("escape cache", o -> o.setEscapeCacheSize(64)));
+        modes.add(mode("class version 53", o -> o.setClassVersion(53)));
+        modes.add(mode("split methods", o -> o.setMethodSizeLimit(40)));
+        modes.add(mode("everything", o -> {
+            o.setBuilderPoolEnabled(true);
+            o.setChunkedOutputEnabled(true);
+            o.setSegmentOutputEnabled(true);
+            o.setGzipOutputEnabled(true);
+            o.setEscapeCacheSize(64);
+            o.setClassVersion(53);
+            o.setMethodSizeLimit(40);
+        }));
+        return modes;
+    }
+
+    private static Object[] mode(String name, Consumer<CompilerOptions> setup) {
+        return new Object[]{name, setup};
+    }
+
+    private final Consumer<CompilerOptions> setup;
+
+    public OutputModesTest(String name, Consumer<CompilerOptions> setup) {
+        this.setup = setup;
+    }
+
+    private FastMustache compiler(String template) {
+        return compiler(template, Collections.emptyMap());
+    }
+
+    private FastMustache compiler(String template, Map<String, String> partials) {
+        CompilerOptions options = new CompilerOptions();
+        options.setByteOutputEnabled(true);
+        options.setResolver((name, partial) -> partials.containsKey(partial) ? new StringReader(partials.get(partial)) : null);
+        setup.accept(options);
+
+        return new FastMustache(template).withOptions(options);
+    }
+
+    private static Map<String, Object> map(Object... entries) {
+        Map<String, Object> map = new HashMap<>();
+
+        for(int i = 0; i < entries.length; i += 2) {
+            map.put((String) entries[i], entries[i + 1]);
+        }
+
+        return map;
+    }
+
+    private static Map<String, Object> createUserMap() {
+        MustacheLambda<TemplateData> bold = (builder, section, data) -> {
+            builder.append("<b>");
+            section.render(builder, data);
+            builder.append("</b>");
+        };
+
+        List<Map<String, Object>> items = Arrays.asList(map("name", "a", "qty", 1), map("name", "bé", "qty", 2));
+
+        return map("name", "Rick <&>", "age", 42, "admin", true, "items", items,
+                "arr", new Object[]{Collections.singletonMap("name", "x")},
+                "best", Collections.singletonMap("name", "best"), "bold", bold);
+    }
+
+    @Test
+    public void testClassData() throws Exception {
+        Template<User> template = compiler(TEMPLATE).compile(User.class);
+
+        // Renders twice, as some modes keep state between renders
+        assertRenders(EXPECTED, template, new User());
+        assertRenders(EXPECTED, template, new User());
+    }
+
+    @Test
+    public void testSimpleData() throws Exception {
+        Template<TemplateData> template = compiler(TEMPLATE).compileSimple();
+
+        assertRenders(EXPECTED, template, new MapData(createUserMap()));
+    }
+
+    @Test
+    public void testTypedData() throws Exception {
+        Map<String, MustacheType> types = new HashMap<>();
+        types.put("admin", MustacheType.BOOLEAN);
+        types.put("items", MustacheType.ARRAY);
+        types.put("arr", MustacheType.ARRAY);
+        types.put("best", MustacheType.DATA);
+        types.put("bold", MustacheType.LAMBDA);
+
+        Template<TemplateData> template = compiler(TEMPLATE).compileTyped(types);
+
+        assertRenders(EXPECTED, template, new MapData(createUserMap()));
+    }
+
+    @Test
+    public void testNestedUnknownSections() throws Exception {
+        Map<String, Object> c = map("x", "<c>");
+        MustacheLambda<TemplateData> wrap = (builder, section, data) -> {
+            builder.append("(");
+            section.render(builder, data);
+            builder.append(")");
+        };
+        Map<String, Object> data = map("x", "top", "w", wrap, "a", Arrays.asList(
+                map("b", true, "c", c, "x", "a1"),
+                map("b", false, "c", Arrays.asList(c, c), "x", "a2")));
+
+        Template<TemplateData> template = compiler("{{#a}}[{{x}}{{#b}}B{{#c}}{{x}}{{/c}}{{/b}}{{^b}}!{{#c}}{{x}},{{/c}}{{/b}}" +
+                "{{#w}}{{x}}{{#c}}{{x}}{{/c}}{{/w}}]{{/a}}{{^a}}none{{/a}}{{#missing}}m{{/missing}}").compileSimple();
+
+        assertRenders("[a1B&lt;c&gt;(a1&lt;c&gt;)][a2!&lt;c&gt;,&lt;c&gt;,(a2&lt;c&gt;&lt;c&gt;)]", template, new MapData(data));
+    }
+
+    @Test
+    public void testUnknownSectionLookups() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        TemplateData data = new MapData(map("a", true, "b", false, "c", "<c>")) {
+            @Override
+            public Object get(String key) {
+                lookups.incrementAndGet();
+                return super.get(key);
+            }
+        };
+
+        Template<TemplateData> template = compiler("{{#a}}A{{/a}}{{^b}}B{{/b}}{{#c}}C{{/c}}").compileSimple();
+
+        // Each unknown section fetches its value only once
+        assertEquals("ABC", template.render(data));
+        assertEquals(3, lookups.get());
+    }
+
+    @Test
+    public void testValueTypes() throws Exception {
+        Template<Values> template = compiler("{{i}},{{l}},{{l2}},{{sh}},{{b}},{{d}},{{f}},{{z}},{{c}},{{{c}}}," +
+                "{{bi}},{{bn}},{{bl}},{{bd}},{{bs}},{{bf}},{{sb}},{{{sb}}},{{cs}},{{o}}").compile(Values.class);
+
+        assertRenders("-42,-9223372036854775808,1234567890123,-7,8,-0.5,2.25,true,&lt;,<," +
+                "7,null,-9,3.0,5,1.5,&lt;sb&gt;,<sb>,null,12", template, new Values());
+    }
+
+    @Test
+    public void testEnumNames() throws Exception {
+        Template<Values> template = compiler("{{e}},{{{e}}},{{en}},{{a}}").compile(Values.class);
+
+        assertRenders("&lt;blocked&gt;,<blocked>,null,ACTIVE", template, new Values());
+    }
+
+    @Test
+    public void testTrusted() throws Exception {
+        Template<Trusting> template = compiler("{{html}}|{{text}}|{{{text}}}").compile(Trusting.class);
+
+        assertRenders("<b>x</b>|&lt;b&gt;|<b>", template, new Trusting());
+    }
+
+    @Test
+    public void testFlatTemplate() throws Exception {
+        StringBuilder template = new StringBuilder("\u0001a\u0002{{i}}");
+        StringBuilder expected = new StringBuilder("\u0001a\u0002-42");
+
+        // More arguments than a single string concatenation takes
+        for(int i = 0; i < 150; i++) {
+            template.append("{{l}},{{d}};{{sb}}{{{sb}}}");
+            expected.append(Long.MIN_VALUE).append(",-0.5;&lt;sb&gt;<sb>");
+        }
+
+        char[] huge = new char[17000];
+        Arrays.fill(huge, 'h');
+        template.append(huge).append("{{c}}{{bn}}");
+        expected.append(huge).append("&lt;null");
+
+        assertRenders(expected.toString(), compiler(template.toString()).compile(Values.class), new Values());
+    }
+
+    @Test
+    public void testFlatTemplateOptions() throws Exception {
+        CompilerOptions options = new CompilerOptions();
+        setup.accept(options);
+        options.setClassVersion(53);
+
+        // The builder options take precedence over the concatenation, which doesn't have a capacity field
+        Template<Values> template = new FastMustache("a{{i}}").withOptions(options).compile(Values.class);
+        boolean capacityField = Arrays.stream(template.getClass().getDeclaredFields())
+                .anyMatch(field -> field.getName().equals("capacity"));
+
+        assertEquals(options.isAdaptiveCapacityEnabled(), capacityField);
+        assertRenders("a-42", template, new Values());
+    }
+
+    @Test
+    public void testUnicode() throws Exception {
+        Template<TemplateData> template = compiler("é😀{{v}}|{{{w}}}\u3042").compileSimple();
+
+        // Unpaired surrogates can't be encoded, so they're replaced when escaping
+        Map<String, Object> data = map("v", "João 😀<\ud83d>\ude00日", "w", "😀é\u3042x");
+        assertRenders("é😀Jo&#227;o &#128512;&lt;&#65533;&gt;&#65533;&#26085;|😀é\u3042x\u3042", template, new MapData(data));
+    }
+
+    @Test
+    public void testPartials() throws Exception {
+        Map<String, String> partials = new HashMap<>();
+        partials.put("header", "H{{name}}{{>sub}}");
+        partials.put("sub", "S{{age}}");
+        partials.put("item", "[{{name}}:{{qty}}]");
+        partials.put("node", "<{{name}}{{#children}}{{>node}}{{/children}}>");
+        partials.put("even", "E{{name}}{{#children}}{{>odd}}{{/children}}");
+        partials.put("odd", "O{{name}}{{#children}}{{>even}}{{/children}}");
+
+        FastMustache resolved = compiler("<{{>header}}|{{#items}}{{>item}}{{/items}}>", partials);
+        assertRenders("<HRick &lt;&amp;&gt;S42|[a:1][b&#233;:2]>", resolved.compile(User.class), new User());
+
+        Node tree = new Node("r", new Node("a", new Node("a1"), new Node("a2", new Node("x"))), new Node("b"));
+        String expected = "T<r<a<a1><a2<x>>><b>>|ErOaEa1Ea2OxOb";
+
+        assertRenders(expected, compiler("T{{>node}}|{{>even}}", partials).compile(Node.class), tree);
+
+        Map<String, MustacheType> types = Collections.singletonMap("children", MustacheType.ARRAY);
+        Template<TemplateData> typed = compiler("T{{>node}}|{{>even}}", partials).compileTyped(types);
+        assertRenders(expected, typed, new ObjectData(tree));
+    }
+
+    @Test
+    public void testDataPartial() throws Exception {
+        Map<String, Object> data = createUserMap();
+        data.put("part", new FastMustache("P{{name}}").compileSimple());
+
+        Template<TemplateData> template = compiler("<{{>part}}>").compileTyped(Collections.emptyMap());
+        assertRenders("<PRick &lt;&amp;&gt;>", template, new MapData(data));
+    }
+
+    @Test
+    public void testDataPartialString() throws Exception {
+        Map<String, Object> data = createUserMap();
+        data.put("part", new Template<TemplateData>() {
+            @Override
+            public String render(TemplateData data) {
+                return "P";
+            }
+
+            @Override
+            public void render(TemplateData data, Appendable out) throws IOException {
+                throw new IOException("Only rendered into strings");
+            }
+        });
+
+        // Rendering into a string never goes through an Appendable, which could throw
+        Template<TemplateData> template = compiler("<{{>part}}>").compileTyped(Collections.emptyMap());
+        assertEquals("<P>", template.render(new MapData(data)));
+    }
+
+    public static class Item {
+        public String name;
+        public int qty;
+
+        public Item(String name, int qty) {
+            this.name = name;
+            this.qty = qty;
+        }
+    }
+
+    public static class User {
+        public String name = "Rick <&>";
+        public int age = 42;
+        public boolean admin = true;
+        public List<Item> items = Arrays.asList(new Item("a", 1), new Item("bé", 2));
+        public Item[] arr = {new Item("x", 9)};
+        public Item best = new Item("best", 5);
+        public MustacheLambda<User> bold = (builder, section, data) -> {
+            builder.append("<b>");
+            section.render(builder, data);
+            builder.append("</b>");
+        };
+    }
+
+    public static class Node {
+        public String name;
+        public List<Node> children;
+
+        public Node(String name, Node... children) {
+            this.name = name;
+            this.children = Arrays.asList(children);
+        }
+    }
+
+    public static class Trusting {
+        @Trusted
+        public String html = "<b>x</b>";
+        public String text = "<b>";
+    }
+
+    public enum Status {
+        ACTIVE,
+        BLOCKED {
+            @Override
+            public String toString() {
+                return "<blocked>";
+            }
+        }
+    }
+
+    public static class Values {
+        public int i = -42;
+        public long l = Long.MIN_VALUE;
+        public long l2 = 1234567890123L;
+        public short sh = -7;
+        public byte b = 8;
+        public double d = -0.5;
+        public float f = 2.25f;
+        public boolean z = true;
+        public char c = '<';
+        public Integer bi = 7;
+        public Integer bn = null;
+        public Long bl = -9L;
+        public Double bd = 3.0;
+        public Short bs = 5;
+        public Float bf = 1.5f;
+        public StringBuilder sb = new StringBuilder("<sb>");
+        public CharSequence cs = null;
+        public Object o = 12;
+        public Status e = Status.BLOCKED;
+        public Status en = null;
+        public Status a = Status.ACTIVE;
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.guichaguri.fastmustache;
+
+import com.guichaguri.fastmustache.output.ByteBufferArena;
+import com.guichaguri.fastmustache.output.ChunkedOutput;
+import com.guichaguri.fastmustache.output.PooledPageAllocator;
+import com.guichaguri.fastmustache.output.SegmentOutput;
+import com.guichaguri.fastmustache.template.Template;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Asserts that a template renders the same output through every render method
+ */
+public final class TemplateAssert {
+
+    private static final PooledPageAllocator ALLOCATOR = new PooledPageAllocator(8);
+
+    private TemplateAssert() {
+
+    }
+
+    public static <T> void assertRenders(String expected, Template<T> template, T data) throws IOException {
+        byte[] expectedBytes = expected.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals("render(T)", expected, template.render(data));
+
+        StringBuilder builder = new StringBuilder("prefix:");
+        template.render(builder, data);
+        assertEquals("render(StringBuilder, T)", "prefix:" + expected, builder.toString());
+
+        StringWriter writer = new StringWriter();
+        template.render(data, writer);
+        assertEquals("render(T, Appendable)", expected, writer.toString());
+
+        ChunkedOutput chunked = template.renderChunked(data);
+        StringWriter chunkedWriter = new StringWriter();
+        chunked.writeTo(chunkedWriter);
+        assertEquals("renderChunked(T)", expected, chunked.toString());
+        assertEquals("ChunkedOutput.writeTo", expected, chunkedWriter.toString());
+        assertEquals("ChunkedOutput.length", expected.length(), chunked.length());
+
+        assertArrayEquals("renderBytes(T)", expectedBytes, template.renderBytes(data));
+
+        ByteBuffer buffer = ByteBuffer.allocate(expectedBytes.length);
+        template.render(data, buffer);
+        assertArrayEquals("render(T, ByteBuffer)", expectedBytes, buffer.array());
+
+        SegmentOutput segments = template.renderSegments(data);
+        assertEquals("SegmentOutput.size", expectedBytes.length, segments.size());
+        assertArrayEquals("renderSegments(T)", expectedBytes, join(segments.toSegments()));
+
+        ByteBufferArena arena = new ByteBufferArena(ALLOCATOR, 16);
+        template.render(data, arena);
+        assertEquals("ByteBufferArena.size", expectedBytes.length, arena.size());
+        assertArrayEquals("render(T, ByteBufferArena)", expectedBytes, join(arena.flip()));
+        arena.reset();
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        template.renderGzip(data, gzip);
+        assertArrayEquals("renderGzip(T)", expectedBytes, gunzip(gzip.toByteArray()));
+    }
+
+    private static byte[] join(ByteBuffer[] buffers) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        for(ByteBuffer buffer : buffers) {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try(InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            byte[] buffer = new byte[4096];
+            int read;
+
+            while((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,225 @@
+package com.guichaguri.fastmustache.compiler.parser;
+
+import com.guichaguri.fastmustache.FastMustache;
+import com.guichaguri.fastmustache.compiler.MustacheException;
+import com.guichaguri.fastmustache.data.MapData;
+import com.guichaguri.fastmustache.escaper.Escaper;
+import com.guichaguri.fastmustache.template.CompilerOptions;
+import com.guichaguri.fastmustache.template.Template;
+import com.guichaguri.fastmustache.template.TemplateData;
+import com.guichaguri.fastmustache.template.Trusted;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.Test;
+
+import static com.guichaguri.fastmustache.TemplateAssert.assertRenders;
+import static org.junit.Assert.fail;
+
+public class ContextualEscapingTest {
+
+    private static final String VALUE = "a\"<b> &'/? x";
+    private static final String HTML = "a&quot;&lt;b&gt; &amp;&#39;/? x";
+    private static final String JS = "a\\u0022\\u003cb\\u003e \\u0026\\u0027\\/? x";
+    private static final String UNQUOTED = "a&quot;&lt;b&gt;&#32;&amp;&#39;/?&#32;x";
+    private static final String CSS = "a\\22 \\3c b\\3e  \\26 \\27 \\2f \\3f  x";
+
+    private static void assertContextual(String template, String expected) throws Exception {
+        assertContextual(template, Collections.singletonMap("v", VALUE), expected);
+    }
+
+    private static void assertContextual(String template, Map<String, Object> data, String expected) throws Exception {
+        assertRenders(expected, compile(template, Collections.emptyMap()), new MapData(data));
+    }
+
+    private static Template<TemplateData> compile(String template, Map<String, String> partials) throws Exception {
+        CompilerOptions options = options();
+        options.setResolver((name, partial) -> partials.containsKey(partial) ? new StringReader(partials.get(partial)) : null);
+
+        return new FastMustache(template).withOptions(options).compileTyped(Collections.emptyMap());
+    }
+
+    private static CompilerOptions options() {
+        CompilerOptions options = new CompilerOptions();
+        options.setByteOutputEnabled(true);
+        options.setContextualEscapingEnabled(true);
+        options.addTrustedType(Markup.class);
+        return options;
+    }
+
+    private static void assertTrusted(String template, String expected) throws Exception {
+        assertTrusted(template, options(), expected);
+    }
+
+    private static void assertTrusted(String template, CompilerOptions options, String expected) throws Exception {
+        Template<Trusting> compiled = new FastMustache(template).withOptions(options).compile(Trusting.class);
+        assertRenders(expected, compiled, new Trusting());
+    }
+
+    private static void assertRejected(String template, Map<String, String> partials) throws Exception {
+        try {
+            compile(template, partials);
+            fail("Compiled " + template);
+        } catch(MustacheException ex) {
+            // Expected
+        }
+    }
+
+    private static Map<String, Object> map(String... entries) {
+        Map<String, Object> map = new HashMap<>();
+
+        for(int i = 0; i < entries.length; i += 2) {
+            map.put(entries[i], entries[i + 1]);
+        }
+
+        return map;
+    }
+
+    @Test
+    public void testText() throws Exception {
+        assertContextual("<p>{{v}}</p>", "<p>" + HTML + "</p>");
+        assertContextual("<!-- <script> {{v}} -->", "<!-- <script> " + HTML + " -->");
+        assertContextual("{{{v}}}", VALUE);
+    }
+
+    @Test
+    public void testAttributes() throws Exception {
+        assertContextual("<p title=\"{{v}}\" data-x={{v}}></p>", "<p title=\"" + HTML + "\" data-x=" + UNQUOTED + "></p>");
+        assertContextual("<a style=\"color:{{v}}\"></a>", "<a style=\"color:" + CSS + "\"></a>");
+        assertContextual("<a onclick='f(\"{{v}}\")'></a>", "<a onclick='f(\"" + JS + "\")'></a>");
+    }
+
+    @Test
+    public void testUrls() throws Exception {
+        assertContextual("<a href=\"/s/{{v}}?q={{v}}#{{v}}\">x</a>",
+                "<a href=\"/s/a%22%3Cb%3E%20&amp;%27/?%20x?q=a%22%3Cb%3E%20%26%27%2F%3F%20x#a%22%3Cb%3E%20%26%27%2F%3F%20x\">x</a>");
+    }
+
+    @Test
+    public void testUrlSchemes() throws Exception {
+        assertUrl("<a href=\"{{v}}\">", "javascript:alert(1)", "<a href=\"about:invalid\">");
+        assertUrl("<a href={{v}}>", "JavaScript:alert(1)", "<a href=about:invalid>");
+        assertUrl("<img src=\" java{{v}}\">", "script:alert(1)", "<img src=\" javaabout:invalid\">");
+        assertUrl("<iframe src=\"{{v}}\">", "data:text/html,<b>", "<iframe src=\"about:invalid\">");
+        assertUrl("<a href=\"{{v}}\">", " javascript:alert(1)", "<a href=\"%20javascript:alert(1)\">");
+        assertUrl("<a href=\"{{v}}\">", "HTTPS://a.b/c?d=1&e", "<a href=\"HTTPS://a.b/c?d=1&amp;e\">");
+        assertUrl("<a href=\"{{v}}\">", "mailto:a@b.c", "<a href=\"mailto:a@b.c\">");
+        assertUrl("<a href=\"{{v}}\">", "/a/b:c", "<a href=\"/a/b:c\">");
+
+        assertUrl("<a href=\"{{v}}\">", "javascript", "<a href=\"javascript\">");
+        assertUrl("<a href=\"{{v}}\">", ":alert(1)", "<a href=\"about:invalid\">");
+
+        // Only the start of the URL can choose the scheme
+        assertUrl("<a href=\"/a/{{v}}\">", "javascript:alert(1)", "<a href=\"/a/javascript:alert(1)\">");
+    }
+
+    @Test
+    public void testSplitUrlSchemes() throws Exception {
+        // The scheme can be completed by the text or the variable that follows
+        String template = "<a href=\"{{p}}://{{h}}\">";
+        assertContextual(template, map("p", "javascript", "h", "%0aalert(1)"), "<a href=\"./javascript://%0aalert(1)\">");
+        assertContextual(template, map("p", "https", "h", "a.b"), "<a href=\"https://a.b\">");
+
+        template = "<a href=\"{{p}}{{b}}\">";
+        assertContextual(template, map("p", "javascript", "b", ":alert(1)"), "<a href=\"./javascriptabout:invalid\">");
+        assertContextual(template, map("p", "https://a.b", "b", "/c"), "<a href=\"https://a.b/c\">");
+        assertContextual(template, map("p", "a.b", "b", "/c"), "<a href=\"./a.b/c\">");
+
+        assertContextual("<a href=\"java{{p}}:{{h}}\">", map("p", "script", "h", "x"), "<a href=\"java./script:x\">");
+        assertContextual("<a href=\"{{p}}/{{h}}:\">", map("p", "javascript", "h", "x"), "<a href=\"javascript/x:\">");
+    }
+
+    @Test
+    public void testUnquotedAttributes() throws Exception {
+        assertUrl("<div class={{v}}>", "x onmouseover=alert(1)", "<div class=x&#32;onmouseover&#61;alert(1)>");
+        assertUrl("<div class=a{{v}}>", "\tb`", "<div class=a&#9;b&#96;>");
+        assertUrl("<a href={{v}}>", "/a b>", "<a href=/a%20b%3E>");
+
+        assertRejected("<a style={{v}}>", Collections.emptyMap());
+        assertRejected("<a onclick=f({{v}})>", Collections.emptyMap());
+    }
+
+    @Test
+    public void testPartials() throws Exception {
+        Map<String, String> partials = new HashMap<>();
+        partials.put("link", "<a href=\"{{v}}\">{{v}}</a>");
+        partials.put("open", "<a href=\"");
+        partials.put("code", "f({{v}});");
+
+        Template<TemplateData> template = compile("<p>{{>link}}</p><script>var a = {{v}};</script>", partials);
+        assertRenders("<p><a href=\"about:invalid\">javascript:x</a></p><script>var a = \"javascript:x\";</script>",
+                template, new MapData(Collections.singletonMap("v", "javascript:x")));
+
+        // Partials start and end in the HTML text
+        assertRejected("<script>{{>code}}</script>", partials);
+        assertRejected("<p class=\"{{>link}}\">", partials);
+        assertRejected("{{>open}}x\">", partials);
+    }
+
+    private static void assertUrl(String template, String url, String expected) throws Exception {
+        assertContextual(template, Collections.singletonMap("v", url), expected);
+    }
+
+    @Test
+    public void testScriptLiterals() throws Exception {
+        assertContextual("<script>var a = {{v}};</script>", "<script>var a = \"" + JS + "\";</script>");
+        assertContextual("<script>var a = '{{v}}'; // {{v}}\nf({{v}}); /* {{v}} */</script>",
+                "<script>var a = '" + JS + "'; // " + JS + "\nf(\"" + JS + "\"); /* " + JS + " */</script>");
+        assertContextual("<script>f(`a${ {{v}} + {a: 1}.a }b{{v}}\\${{v}}`, \"\\\"{{v}}\");</script>",
+                "<script>f(`a${ \"" + JS + "\" + {a: 1}.a }b" + JS + "\\$" + JS + "`, \"\\\"" + JS + "\");</script>");
+        assertContextual("<a onclick=\"f({{v}})\" onmouseover='g(\"{{v}}\")'></a>",
+                "<a onclick=\"f(&quot;" + JS + "&quot;)\" onmouseover='g(\"" + JS + "\")'></a>");
+    }
+
+    @Test
+    public void testTrusted() throws Exception {
+        Trusting data = new Trusting();
+        String markup = data.markup.toString();
+
+        // Trusted values are only written as they are in the HTML text and quoted attributes
+        assertTrusted("<p title=\"{{html}}\">{{html}}{{markup}}</p>", "<p title=\"" + data.html + "\">" + data.html + markup + "</p>");
+        assertTrusted("<script>var a = {{html}}, b = '{{markup}}';</script>",
+                "<script>var a = \"" + Escaper.JAVASCRIPT.escape(data.html) + "\", b = '" + Escaper.JAVASCRIPT.escape(markup) + "';</script>");
+        assertTrusted("<a href=\"{{link}}\" style=\"color:{{html}}\" class={{html}}>{{link}}</a>",
+                "<a href=\"about:invalid\" style=\"color:" + Escaper.CSS.escape(data.html) + "\" class=" +
+                Escaper.HTML_UNQUOTED.escape(data.html) + ">" + data.link + "</a>");
+
+        // Numbers and UUIDs are never escaped, but are still quoted in scripts
+        assertTrusted("<p>{{count}} {{id}}</p><script>f({{count}}, {{id}});</script><a onclick=\"f({{count}})\"></a>",
+                "<p>5 " + data.id + "</p><script>f(\"5\", \"" + data.id + "\");</script><a onclick=\"f(&quot;5&quot;)\"></a>");
+
+        // Escapers that aren't for HTML still escape trusted values
+        CompilerOptions options = new CompilerOptions();
+        options.setEscaper(Escaper.JSON);
+        assertTrusted("{\"h\": \"{{html}}\", \"n\": {{count}}}", options,
+                "{\"h\": \"" + Escaper.JSON.escape(data.html) + "\", \"n\": 5}");
+    }
+
+    @Test
+    public void testRawText() throws Exception {
+        assertContextual("<script type=\"text/javascript\">var s = \"{{v}}\";</SCRIPT >{{v}}",
+                "<script type=\"text/javascript\">var s = \"" + JS + "\";</SCRIPT >" + HTML);
+        assertContextual("<style>p{content:'{{v}}'}</style>", "<style>p{content:'" + CSS + "'}</style>");
+        assertContextual("<textarea>{{v}}</textarea>", "<textarea>" + HTML + "</textarea>");
+    }
+
+    public static class Trusting {
+        @Trusted
+        public String html = "<b>\"x\"</b>";
+        @Trusted
+        public String link = "javascript:alert(3)";
+        public Markup markup = new Markup();
+        public int count = 5;
+        public UUID id = UUID.fromString("123e4567-e89b-12d3-a456-426614174000");
+    }
+
+    public static class Markup {
+        @Override
+        public String toString() {
+            return "<i>'m'</i>";
+        }
+    }
+
+}
@@ -0,0 +1,176 @@
+package com.guichaguri.fastmustache.escaper;
+
+import com.guichaguri.fastmustache.output.ArrayByteOutput;
+import com.guichaguri.fastmustache.output.ByteOutput;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class EscaperTest {
+
+    private static final String INPUT = "a\"b\\c\n<&>'é\u2028\t";
+
+    @Test
+    public void testHtml() throws Exception {
+        assertEscapes(Escaper.HTML, "a&quot;b\\c\n&lt;&amp;&gt;&#39;&#233;&#8232;\t");
+        assertEscapes(Escaper.HTML, "😀\ud83d<\ude00", "&#128512;&#65533;&lt;&#65533;");
+    }
+
+    @Test
+    public void testAsciiTable() throws Exception {
+        // Only the HTML special characters have a replacement in the table
+        for(char c = 0; c < 0x80; c++) {
+            String str = String.valueOf(c);
+            if ("<>&\"'".indexOf(c) == -1) assertSame(str, Escaper.HTML.escape(str));
+        }
+
+        assertEscapes(Escaper.HTML, "<>&\"'", "&lt;&gt;&amp;&quot;&#39;");
+    }
+
+    @Test
+    public void testHtmlUtf8() throws Exception {
+        assertEscapes(Escaper.HTML_UTF8, "a&quot;b\\c\n&lt;&amp;&gt;&#39;é\u2028\t");
+    }
+
+    @Test
+    public void testXmlAttribute() throws Exception {
+        assertEscapes(Escaper.XML_ATTRIBUTE, "a&quot;b\\c&#10;&lt;&amp;&gt;&apos;é\u2028&#9;");
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        assertEscapes(Escaper.JSON, "a\\\"b\\\\c\\n<&>'é\\u2028\\t");
+        assertEscapes(Escaper.JSON, "\u0000\u001f\u007f", "\\u0000\\u001f\\u007f");
+    }
+
+    @Test
+    public void testJavaScript() throws Exception {
+        assertEscapes(Escaper.JAVASCRIPT, "a\\u0022b\\\\c\\n\\u003c\\u0026\\u003e\\u0027é\\u2028\\t");
+        assertEscapes(Escaper.JAVASCRIPT, "`${a}`*/", "\\u0060\\u0024{a}\\u0060*\\/");
+    }
+
+    @Test
+    public void testCss() throws Exception {
+        assertEscapes(Escaper.CSS, "a\\22 b\\5c c\\a \\3c \\26 \\3e \\27 é\u2028\\9 ");
+    }
+
+    @Test
+    public void testUrl() throws Exception {
+        assertEscapes(Escaper.URL, "a%22b%5Cc%0A%3C&amp;%3E%27é\u2028%09");
+        assertEscapes(Escaper.URL, "/path?a=1&b=2#top", "/path?a=1&amp;b=2#top");
+    }
+
+    @Test
+    public void testSafeUrl() throws Exception {
+        assertEscapes(Escaper.SAFE_URL, "a%22b%5Cc%0A%3C&amp;%3E%27é\u2028%09");
+        assertEscapes(Escaper.SAFE_URL, "https://a.b/?c=1&d", "https://a.b/?c=1&amp;d");
+        assertEscapes(Escaper.SAFE_URL, "javascript:alert(1)", "about:invalid");
+        assertEscapes(Escaper.SAFE_URL, "vbscript:x", "about:invalid");
+        assertEscapes(Escaper.SAFE_URL, "\tjavascript:x", "%09javascript:x");
+        assertEscapes(Escaper.SAFE_URL, ":a", "about:invalid");
+        assertEscapes(Escaper.SAFE_URL, "javascript", "javascript");
+    }
+
+    @Test
+    public void testSafeUrlPrefix() throws Exception {
+        assertEscapes(Escaper.SAFE_URL_PREFIX, "a%22b%5Cc%0A%3C&amp;%3E%27é\u2028%09");
+        assertEscapes(Escaper.SAFE_URL_PREFIX, "javascript", "./javascript");
+        assertEscapes(Escaper.SAFE_URL_PREFIX, "HTTPS", "HTTPS");
+        assertEscapes(Escaper.SAFE_URL_PREFIX, "javascript:x", "about:invalid");
+        assertEscapes(Escaper.SAFE_URL_PREFIX, "a/b", "a/b");
+        assertEscapes(Escaper.SAFE_URL_PREFIX, "", "");
+    }
+
+    @Test
+    public void testHtmlUnquoted() throws Exception {
+        assertEscapes(Escaper.HTML_UNQUOTED, "a&quot;b\\c&#10;&lt;&amp;&gt;&#39;&#233;&#8232;&#9;");
+        assertEscapes(Escaper.HTML_UNQUOTED, "a b=`\f\r", "a&#32;b&#61;&#96;&#12;&#13;");
+    }
+
+    @Test
+    public void testQuoted() {
+        Escaper quoted = Escaper.JAVASCRIPT.quoted("'");
+        assertEquals("'", quoted.getQuote());
+        assertSame(Escaper.JAVASCRIPT.getOwner(), quoted.getOwner());
+        assertEquals(null, quoted.unquoted().getQuote());
+        assertSame(Escaper.JAVASCRIPT, Escaper.JAVASCRIPT.unquoted());
+    }
+
+    @Test
+    public void testUrlComponent() throws Exception {
+        assertEscapes(Escaper.URL_COMPONENT, "a%22b%5Cc%0A%3C%26%3E%27é\u2028%09");
+        assertEscapes(Escaper.URL_COMPONENT, "a-b_c.d~e f/?", "a-b_c.d~e%20f%2F%3F");
+    }
+
+    @Test
+    public void testNone() {
+        assertSame(INPUT, Escaper.NONE.escape(INPUT));
+    }
+
+    @Test
+    public void testUnchangedString() {
+        String str = "nothing to escape";
+        assertSame(str, Escaper.HTML.escape(str));
+        assertSame(str, Escaper.JAVASCRIPT.escape(str));
+    }
+
+    @Test
+    public void testNull() throws Exception {
+        for(Escaper escaper : new Escaper[]{Escaper.HTML, Escaper.CSS, Escaper.JSON, Escaper.SAFE_URL}) {
+            Class<?> owner = escaper.getOwner();
+            StringBuilder builder = new StringBuilder();
+            owner.getMethod("escapeInto", StringBuilder.class, CharSequence.class).invoke(null, builder, null);
+            assertEquals("null", builder.toString());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMissingMethods() {
+        new Escaper(String.class);
+    }
+
+    @Test
+    public void testCache() {
+        EscapeCache cache = new EscapeCache(16);
+        assertEquals(null, cache.get("<a>"));
+
+        cache.put("<a>", "&lt;a&gt;");
+        assertEquals("&lt;a&gt;", cache.get("<a>"));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    private static void assertEscapes(Escaper escaper, String expected) throws Exception {
+        assertEscapes(escaper, INPUT, expected);
+    }
+
+    /**
+     * Checks that every escaping method of the escaper gives the same output
+     */
+    private static void assertEscapes(Escaper escaper, String input, String expected) throws Exception {
+        Class<?> owner = escaper.getOwner();
+
+        assertEquals("escape", expected, escaper.escape(input));
+
+        Method builderMethod = owner.getMethod("escapeInto", StringBuilder.class, CharSequence.class);
+        StringBuilder builder = new StringBuilder("prefix:");
+        builderMethod.invoke(null, builder, new StringBuilder(input));
+        assertEquals("escapeInto(StringBuilder)", "prefix:" + expected, builder.toString());
+
+        Method appendableMethod = owner.getMethod("escapeInto", Appendable.class, CharSequence.class);
+        StringWriter writer = new StringWriter();
+        appendableMethod.invoke(null, writer, input);
+        assertEquals("escapeInto(Appendable)", expected, writer.toString());
+
+        Method byteMethod = owner.getMethod("escapeInto", ByteOutput.class, CharSequence.class);
+        ArrayByteOutput bytes = new ArrayByteOutput();
+        byteMethod.invoke(null, bytes, input);
+        assertArrayEquals("escapeInto(ByteOutput)", expected.getBytes(StandardCharsets.UTF_8), bytes.toByteArray());
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.guichaguri.fastmustache.output;
+
+import java.io.StringWriter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ChunkedOutputTest {
+
+    private static final String EXPECTED;
+
+    static {
+        StringBuilder builder = new StringBuilder();
+        for(int i = 0; i < 300; i++) builder.append((char) ('a' + i % 26));
+        EXPECTED = builder.toString();
+    }
+
+    /**
+     * Creates an output with small chunks, referenced strings and copied sequences
+     */
+    private static ChunkedOutput createOutput() {
+        ChunkedOutput output = new ChunkedOutput(128);
+        output.append(EXPECTED.substring(0, 100));
+        output.append(EXPECTED.charAt(100));
+        output.append(EXPECTED.substring(101, 250));
+        output.append(new StringBuilder(EXPECTED.substring(250, 290)));
+        output.append(EXPECTED, 290, 300);
+        return output;
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        ChunkedOutput output = createOutput();
+        StringWriter writer = new StringWriter();
+        output.writeTo(writer);
+
+        assertEquals(EXPECTED, output.toString());
+        assertEquals(EXPECTED, writer.toString());
+        assertEquals(EXPECTED.length(), output.length());
+    }
+
+    @Test
+    public void testCharAt() {
+        ChunkedOutput output = createOutput();
+
+        for(int i = 0; i < EXPECTED.length(); i++) {
+            assertEquals(EXPECTED.charAt(i), output.charAt(i));
+        }
+
+        // Going backwards restarts from the first chunk
+        for(int i = EXPECTED.length() - 1; i >= 0; i -= 7) {
+            assertEquals(EXPECTED.charAt(i), output.charAt(i));
+        }
+    }
+
+    @Test
+    public void testSubSequence() {
+        ChunkedOutput output = createOutput();
+
+        for(int start = 0; start <= EXPECTED.length(); start += 9) {
+            for(int end = start; end <= EXPECTED.length(); end += 13) {
+                assertEquals(EXPECTED.substring(start, end), output.subSequence(start, end).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testAppendAfterRead() {
+        ChunkedOutput output = new ChunkedOutput(128);
+        output.append("ab");
+        assertEquals('b', output.charAt(1));
+
+        // The last chunk keeps growing after being read
+        output.append("cd");
+        assertEquals('d', output.charAt(3));
+        assertEquals("bcd", output.subSequence(1, 4));
+    }
+
+}
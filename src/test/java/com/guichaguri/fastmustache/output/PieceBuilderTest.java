@@ -0,0 +1,65 @@
+package com.guichaguri.fastmustache.output;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class PieceBuilderTest {
+
+    private static PieceBuilder createBuilder() {
+        PieceBuilder builder = new PieceBuilder(1);
+        builder.append("Hello");
+        builder.append(',').append(' ');
+        builder.append("--world--", 2, 7);
+        builder.append(new StringBuilder("!?"), 0, 1);
+        builder.append("", 0, 0);
+        builder.append(null);
+        return builder;
+    }
+
+    @Test
+    public void testToString() {
+        PieceBuilder builder = createBuilder();
+
+        assertEquals("Hello, world!null", builder.toString());
+        assertEquals(17, builder.length());
+    }
+
+    @Test
+    public void testCharAt() {
+        PieceBuilder builder = createBuilder();
+        String expected = builder.toString();
+
+        for(int i = 0; i < expected.length(); i++) {
+            assertEquals(expected.charAt(i), builder.charAt(i));
+        }
+    }
+
+    @Test
+    public void testSubSequence() {
+        PieceBuilder builder = createBuilder();
+        String expected = builder.toString();
+
+        for(int start = 0; start <= expected.length(); start++) {
+            for(int end = start; end <= expected.length(); end++) {
+                assertEquals(expected.substring(start, end), builder.subSequence(start, end).toString());
+            }
+        }
+    }
+
+    @Test
+    public void testMutableSequence() {
+        StringBuilder mutable = new StringBuilder("before");
+        PieceBuilder builder = new PieceBuilder();
+        builder.append(mutable);
+        mutable.setLength(0);
+
+        assertEquals("before", builder.toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() {
+        createBuilder().subSequence(3, 18);
+    }
+
+}